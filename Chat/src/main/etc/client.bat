@@ -10,5 +10,8 @@ set room=neerc
 set username=admin
 set password=admin
 
+rem use class data sharing archive for faster start if it was created
+set cds=
+if exist chat-client.jsa set cds=-XX:+IgnoreUnrecognizedVMOptions -Xshare:auto -XX:SharedArchiveFile=chat-client.jsa
 
-@start java -Dserver.host=%hostname% -Dserver.hostname=%serverName% -Droom=%room% -Dusername=%username% -Dpassword=%password% -Dconsole.encoding=CP866 -jar chat-client.jar
+@start java %cds% -Dserver.host=%hostname% -Dserver.hostname=%serverName% -Droom=%room% -Dusername=%username% -Dpassword=%password% -Dconsole.encoding=CP866 -jar chat-client.jar
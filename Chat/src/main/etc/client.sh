@@ -9,5 +9,10 @@ room=neerc
 username=admin
 password=admin
 
+# use class data sharing archive for faster start if it was created
+cds=
+if [ -f chat-client.jsa ]; then
+  cds="-XX:+IgnoreUnrecognizedVMOptions -Xshare:auto -XX:SharedArchiveFile=chat-client.jsa"
+fi
 
-java -Dserver.host=$hostname  -Dserver.hostname=$serverName -Droom=$room -Dusername=$username -Dpassword=$password -Dconsole.encoding=UTF-8 -jar chat-client.jar
+java $cds -Dserver.host=$hostname  -Dserver.hostname=$serverName -Droom=$room -Dusername=$username -Dpassword=$password -Dconsole.encoding=UTF-8 -jar chat-client.jar
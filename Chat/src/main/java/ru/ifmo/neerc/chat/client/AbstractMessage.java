@@ -5,12 +5,30 @@ import java.awt.Font;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ru.ifmo.neerc.chat.user.UserEntry;
 
 public abstract class AbstractMessage implements Message {
 
-    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("HH:mm:ss");
+    private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat("HH:mm:ss");
+        }
+    };
+
+    private static final AtomicLong SERIALS = new AtomicLong();
+
+    /*
+     * Orders messages without ids which share the date, in the order they were created.
+     */
+    private final long serial = SERIALS.incrementAndGet();
+
+    @Override
+    public String getId() {
+        return null;
+    }
 
     @Override
     public String getChannel() {
@@ -37,15 +55,45 @@ public abstract class AbstractMessage implements Message {
         return Color.black;
     }
 
+    /**
+     * Orders messages by date, then by sender, then by id, messages without an id going first
+     * in the order they were created. Messages with the same date, sender and id are the same,
+     * as ids are given by the sender.
+     */
     @Override
     public int compareTo(Message message) {
-        return getDate().compareTo(message.getDate());
+        int result = getDate().compareTo(message.getDate());
+        if (result != 0) {
+            return result;
+        }
+        result = getSender(this).compareTo(getSender(message));
+        if (result != 0) {
+            return result;
+        }
+        String id = getId();
+        String otherId = message.getId();
+        if (id != null && otherId != null) {
+            return id.compareTo(otherId);
+        }
+        if (id != null || otherId != null) {
+            return id == null ? -1 : 1;
+        }
+        if (message instanceof AbstractMessage) {
+            return Long.compare(serial, ((AbstractMessage) message).serial);
+        }
+        // no serial to compare with, yet only the same message is equal
+        return message == this ? 0 : Integer.compare(System.identityHashCode(this), System.identityHashCode(message));
+    }
+
+    private static String getSender(Message message) {
+        UserEntry user = message.getUser();
+        return user == null || user.getName() == null ? "" : user.getName();
     }
 
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        builder.append(DATE_FORMAT.format(getDate()));
+        builder.append(DATE_FORMAT.get().format(getDate()));
         builder.append(": ");
         if (getUser() != null) {
             builder.append(getUser());
@@ -1,368 +1,709 @@
-/*
-   Copyright 2009 NEERC team
-
-   Licensed under the Apache License, Version 2.0 (the "License");
-   you may not use this file except in compliance with the License.
-   You may obtain a copy of the License at
-
-       http://www.apache.org/licenses/LICENSE-2.0
-
-   Unless required by applicable law or agreed to in writing, software
-   distributed under the License is distributed on an "AS IS" BASIS,
-   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
-   See the License for the specific language governing permissions and
-   limitations under the License.
-*/
-// $Id: AdminTaskList.java,v 1.3 2007/10/28 07:32:12 matvey Exp $
-/**
- * Date: 29.11.2004
- */
-package ru.ifmo.neerc.chat.client;
-
-import ru.ifmo.neerc.chat.user.UserEntry;
-import ru.ifmo.neerc.chat.user.UserRegistry;
-import ru.ifmo.neerc.chat.user.UserRegistryListener;
-import ru.ifmo.neerc.chat.xmpp.XmppChat;
-import ru.ifmo.neerc.task.*;
-
-import javax.swing.*;
-import javax.swing.RowSorter.SortKey;
-import javax.swing.table.AbstractTableModel;
-import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.TableCellRenderer;
-import javax.swing.table.TableColumn;
-import javax.swing.table.TableColumnModel;
-import javax.swing.table.TableRowSorter;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.awt.Component;
-import java.awt.Insets;
-import java.util.*;
-
-/**
- * @author Matvey Kazakov
- */
-public class AdminTaskList extends JTable {
-	private static final Logger LOG = LoggerFactory.getLogger(XmppChat.class);
-    /**
-	 * 
-	 */
-	private static final long serialVersionUID = 1L;
-	
-
-	private static final int TASK_DEFAULT_WIDTH = 250;
-
-    private TaskRegistry registry;
-    private String username;
-
-	private TaskListModel dataModel;
-
-	private TableRowSorter<TaskListModel> sorter;
-	private SortOrder lastOrder = SortOrder.DESCENDING;
-
-    public AdminTaskList(TaskRegistry taskRegistry, String username) {
-        this.registry = taskRegistry;
-        this.username = username;
-        dataModel = new TaskListModel(username);
-        this.registry.addListener(dataModel);
-        UserRegistry.getInstance().addListener(dataModel);
-        setModel(dataModel);
-        setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
-        AdminTaskRenderer renderer = new AdminTaskRenderer();
-        setDefaultRenderer(Object.class, renderer);
-        sorter = new TableRowSorter<>(dataModel);
-        setRowSorter(sorter);
-        sorter.setSortsOnUpdates(true);
-    }
-    
-    private void sort() {
-    	List<? extends SortKey> keys = sorter.getSortKeys();
-    	if (keys != null && keys.isEmpty()) {
-	    	ArrayList<SortKey> list = new ArrayList<SortKey>();
-	    	list.add( new RowSorter.SortKey(0, lastOrder));
-	    	sorter.setSortKeys(list);
-    	}
-        sorter.sort();
-    }
-    
-    private void saveSort() {
-    	if (sorter == null) {
-    		return;
-    	}
-    	
-    	List<? extends SortKey> keys = sorter.getSortKeys();
-    	if (keys != null && !keys.isEmpty()) {
-    		if (keys.get(0).getSortOrder() != SortOrder.UNSORTED) {
-    			lastOrder = keys.get(0).getSortOrder();
-    		}
-    	}
-    }
-    
-    public void doLayout() {
-        final TableColumn taskColumn = getColumnModel().getColumn(0);
-        taskColumn.setPreferredWidth(TASK_DEFAULT_WIDTH);
-        super.doLayout();
-    }
-    
-    private class TaskListModel extends AbstractTableModel implements TaskRegistryListener, UserRegistryListener {
-        private static final long serialVersionUID = 7990317100207622830L;
-
-        private List<Task> tasks = new ArrayList<>();
-        private ArrayList<UserEntry> users = new ArrayList<>();
-        private String username;
-        
-
-        public TaskListModel(String username) {
-            this.username = username;
-            updateTasks();
-        }
-
-        public int getColumnCount() {
-            return users.size() + 1;
-        }
-
-        public int getRowCount() {
-            return tasks.size();
-        }
-
-        public Object getValueAt(int rowIndex, int columnIndex) {
-            if (rowIndex >= getRowCount() || columnIndex >= getColumnCount()) {
-                return null;
-            }
-            
-            if (columnIndex == 0) {
-                return tasks.get(rowIndex);
-            } else {
-                UserEntry currentUser = users.get(columnIndex - 1);
-                Task currentTask = tasks.get(rowIndex);
-                return currentTask.getStatuses().get(currentUser.getName());
-            }
-        }
-
-        public void taskChanged(Task task) {
-        	for (int i = 0; i < tasks.size(); ++i) {
-        		if (tasks.get(i).getId().equals(task.getId())) {
-        			updateTask(i, task);
-        			return;
-        		}
-        	}
-            
-            insertTask(task);
-        }
-
-        public void tasksReset() {
-            updateTasks();
-        }
-
-        public void userChanged(UserEntry userEntry) {
-            updateTasks();
-        }
-
-        public void userPresenceChanged(UserEntry userEntry) {
-            // ignore
-        }
-
-        private void updateTask(int position, Task task) {
-            if ("remove".equals(task.getType())) {
-            	saveSort();
-                tasks.remove(position);
-                fireTableRowsDeleted(position, position);
-                updateTasks();
-                return;
-            }
-            
-            tasks.set(position, task);
-            fireTableRowsUpdated(position, position);
-            
-            Set<String> taskUsers = new HashSet<>();
-            taskUsers.addAll(task.getStatuses().keySet());
-            for (UserEntry ue : users) {
-            	taskUsers.remove(ue.getName());
-            }
-            if (!taskUsers.isEmpty()) {
-            	updateTasks();
-            }
-        }
-        
-        private boolean isAdmin() {
-            return UserRegistry.getInstance().findByName(username).isPower();
-        }
-        
-        private boolean isTaskRelevant(Task task) {
-            return isAdmin() || task.getStatus(username) != null;
-        }
-        
-        private boolean isUserRelevant(UserEntry user) {
-            return (isAdmin() && user.getName().toLowerCase().startsWith("hall")) || userHasTasks(user);
-        }
-        
-        private boolean userHasTasks(UserEntry user) {
-        	for (Task t : tasks) {
-        		if (t.getStatuses().keySet().contains(user.getName())) {
-        			return true;
-        		}
-        	}
-        	
-        	return false;
-        }
-
-        private void insertTask(Task task) {
-            if (isTaskRelevant(task)) {
-                tasks.add(task);
-                fireTableRowsInserted(tasks.size() - 1, tasks.size() - 1);
-                
-                Set<String> taskUsers = new HashSet<>();
-                taskUsers.addAll(task.getStatuses().keySet());
-                for (UserEntry ue : users) {
-                	taskUsers.remove(ue.getName());
-                }
-                if (!taskUsers.isEmpty()) {
-                	updateTasks();
-                }
-                
-                if (tasks.size() == 1) {
-                	sort();
-                }
-            }
-        }
-        
-        private void updateTasks() {
-        	saveSort();
-            tasks = new ArrayList<Task>();
-            users = new ArrayList<UserEntry>();
-            for (Task task : registry.getTasks()) {
-                if (isTaskRelevant(task)) {
-                    tasks.add(task);
-                }
-            }
-            for (UserEntry user : UserRegistry.getInstance().getUsers()) {
-                if (isUserRelevant(user)) {
-                    users.add(user);
-                }
-            }
-            Collections.sort(users);
-	        fireTableStructureChanged();
-	        for (int i = 1; i < users.size(); ++i) {
-	        	sorter.setSortable(i, false);
-	        }
-        }
-
-        public String getColumnName(int column) {
-            return (column == 0) ? "Task" : users.get(column - 1).getName();
-        }
-        
-        @Override
-        public Class<?> getColumnClass(int i) {
-			return Task.class;
-        	
-        }
-    }
-
-
-    private class AdminTaskRenderer extends JTextPane implements TableCellRenderer {
-        /**
-		 * 
-		 */
-		private static final long serialVersionUID = 1L;
-
-		private final Map<Integer, Map<Integer, Integer>> cellSizes
-                = new HashMap<Integer, Map<Integer, Integer>>();
-
-        private final DefaultTableCellRenderer adaptee = new DefaultTableCellRenderer();
-        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-            adaptee.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-            setForeground(adaptee.getForeground());
-            setBackground(adaptee.getBackground());
-            setFont(adaptee.getFont());
-            setMargin(new Insets(1, 1, 1, 1));
-
-            setText("");
-            setToolTipText(null);
-            if (value instanceof Task) {
-                Task task = (Task) value;
-                Task.ScheduleType type = task.getScheduleType();
-                long time = task.getScheduleTime() / 60000;
-
-                StringBuilder scheduled = new StringBuilder();
-
-                if (type != Task.ScheduleType.NONE) {
-                    scheduled.append(" (");
-
-                    if (type == Task.ScheduleType.CONTEST_START)
-                        scheduled.append("start");
-                    else if (type == Task.ScheduleType.CONTEST_END)
-                        scheduled.append("end");
-
-                    if (type != Task.ScheduleType.ABSOLUTE)
-                        scheduled.append((time < 0) ? " - " : " + ");
-
-                    scheduled.append(String.format("%02d:%02d", Math.abs(time) / 60, Math.abs(time) % 60));
-                    scheduled.append(")");
-                }
-
-                setText(" " + task.getTitle() + scheduled);
-                setToolTipText(task.getTitle());
-
-                TaskStatus ourStatus = task.getStatus(username);
-                String displayStatus = null;
-                
-                if (type != Task.ScheduleType.NONE) {
-                    if (task.getNeedsConfirmation())
-                        displayStatus = TaskActions.STATUS_SCHEDULED_CONFIRM;
-                    else
-                        displayStatus = TaskActions.STATUS_SCHEDULED;
-                } else if (ourStatus != null) {
-                    displayStatus = ourStatus.getType();
-                } else if (task.getStatuses().size() > 0) {
-                    displayStatus = TaskActions.STATUS_SUCCESS;
-                    for (TaskStatus taskStatus : task.getStatuses().values()) {
-                        if (TaskActions.STATUS_FAIL.equals(taskStatus.getType())) {
-                            displayStatus = TaskActions.STATUS_FAIL;
-                            break;
-                        } else if (TaskActions.STATUS_RUNNING.equals(taskStatus.getType())) {
-                            displayStatus = TaskActions.STATUS_RUNNING;
-                            break;
-                        } else if (TaskActions.STATUS_SUCCESS.equals(taskStatus.getType())) {
-                        } else {
-                            displayStatus = TaskActions.STATUS_NEW;
-                            break;
-                        }
-                    }
-                }
-                
-                if (displayStatus != null) {
-                    setCaretPosition(0);
-                    insertIcon(TaskIcon.STATUS.get(displayStatus));
-                }
-
-            } else if (value instanceof TaskStatus) {
-                TaskStatus status = (TaskStatus) value;
-                setText(status.getValue());
-                setCaretPosition(0);
-                insertIcon(TaskIcon.STATUS.get(status.getType()));
-                setToolTipText(status.getValue());
-            }
-
-            TableColumnModel columnModel = table.getColumnModel();
-            setSize(columnModel.getColumn(column).getWidth(), 100000);
-            int height_wanted = (int) getPreferredSize().getHeight();
-
-            if (!cellSizes.containsKey(row)) {
-                cellSizes.put(row, new HashMap<Integer, Integer>());
-            }
-            cellSizes.get(row).put(column, height_wanted);
-            int maxHeight = 10;
-            for (Integer h: cellSizes.get(row).values()) {
-                maxHeight = Math.max(maxHeight, h);
-            }
-
-            if (maxHeight != table.getRowHeight(row)) {
-                table.setRowHeight(row, maxHeight);
-            }
-
-            return this;
-        }
-    }
-}
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+// $Id: AdminTaskList.java,v 1.3 2007/10/28 07:32:12 matvey Exp $
+/**
+ * Date: 29.11.2004
+ */
+package ru.ifmo.neerc.chat.client;
+
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.chat.user.UserRegistry;
+import ru.ifmo.neerc.chat.user.UserRegistryListener;
+import ru.ifmo.neerc.chat.xmpp.XmppChat;
+import ru.ifmo.neerc.task.*;
+
+import javax.swing.*;
+import javax.swing.RowSorter.SortKey;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableRowSorter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.event.MouseEvent;
+import java.util.*;
+
+/**
+ * @author Matvey Kazakov
+ */
+public class AdminTaskList extends JTable {
+	private static final Logger LOG = LoggerFactory.getLogger(XmppChat.class);
+    /**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+
+	private static final int TASK_DEFAULT_WIDTH = 250;
+	private static final int SUMMARY_COLUMN = 1;
+	/**
+	 * Above this many user columns the table scrolls horizontally, and only visible columns are rendered.
+	 */
+	private static final int FITTING_COLUMNS = 20;
+
+    private TaskRegistry registry;
+    private String username;
+
+	private TaskListModel dataModel;
+	private final AdminTaskRenderer renderer = new AdminTaskRenderer();
+
+	private TableRowSorter<TaskListModel> sorter;
+	private SortOrder lastOrder = SortOrder.DESCENDING;
+	private boolean aggregated = Boolean.getBoolean("tasks.aggregated");
+
+    public AdminTaskList(TaskRegistry taskRegistry, String username) {
+        this.registry = taskRegistry;
+        this.username = username;
+        dataModel = new TaskListModel(username);
+        this.registry.addListener(dataModel);
+        UserRegistry.getInstance().addListener(dataModel);
+        setModel(dataModel);
+        setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        setDefaultRenderer(Object.class, renderer);
+        sorter = new TableRowSorter<>(dataModel);
+        setRowSorter(sorter);
+        sorter.setSortsOnUpdates(true);
+    }
+    
+    private void sort() {
+    	List<? extends SortKey> keys = sorter.getSortKeys();
+    	if (keys != null && keys.isEmpty()) {
+	    	ArrayList<SortKey> list = new ArrayList<SortKey>();
+	    	list.add( new RowSorter.SortKey(0, lastOrder));
+	    	sorter.setSortKeys(list);
+    	}
+        sorter.sort();
+    }
+    
+    private void saveSort() {
+    	if (sorter == null) {
+    		return;
+    	}
+    	
+    	List<? extends SortKey> keys = sorter.getSortKeys();
+    	if (keys != null && !keys.isEmpty()) {
+    		if (keys.get(0).getSortOrder() != SortOrder.UNSORTED) {
+    			lastOrder = keys.get(0).getSortOrder();
+    		}
+    	}
+    }
+    
+    /**
+     * Switches between a column per user and a single column summarizing the statuses of each task.
+     */
+    public void setAggregated(boolean aggregated) {
+        if (this.aggregated != aggregated) {
+            this.aggregated = aggregated;
+            dataModel.updateTasks();
+        }
+    }
+
+    public boolean isAggregated() {
+        return aggregated;
+    }
+
+    /**
+     * Returns the users shown in the table, in column order.
+     */
+    public List<UserEntry> getUsers() {
+        return Collections.unmodifiableList(dataModel.users);
+    }
+
+    public Task getTask(int row) {
+        return dataModel.getTask(convertRowIndexToModel(row));
+    }
+
+    public void doLayout() {
+        final TableColumn taskColumn = getColumnModel().getColumn(0);
+        taskColumn.setPreferredWidth(TASK_DEFAULT_WIDTH);
+        super.doLayout();
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        int row = rowAtPoint(event.getPoint());
+        int column = columnAtPoint(event.getPoint());
+        if (row < 0 || column < 0) {
+            return null;
+        }
+
+        String text = null;
+        Object value = getValueAt(row, column);
+        if (aggregated && convertColumnIndexToModel(column) == SUMMARY_COLUMN) {
+            Rectangle cell = getCellRect(row, column, false);
+            text = renderer.getSummaryToolTip(getTask(row), event.getX() - cell.x, cell.width);
+        } else if (value instanceof Task) {
+            text = ((Task) value).getTitle();
+        } else if (value instanceof TaskStatus) {
+            text = ((TaskStatus) value).getValue();
+        }
+        return text == null || text.isEmpty() ? null : text;
+    }
+    
+    private class TaskListModel extends AbstractTableModel implements TaskRegistryListener, UserRegistryListener {
+        private static final long serialVersionUID = 7990317100207622830L;
+
+        private List<Task> tasks = new ArrayList<>();
+        private ArrayList<UserEntry> users = new ArrayList<>();
+        private String username;
+        
+
+        public TaskListModel(String username) {
+            this.username = username;
+            updateTasks();
+        }
+
+        public int getColumnCount() {
+            return aggregated ? 2 : users.size() + 1;
+        }
+
+        public int getRowCount() {
+            return tasks.size();
+        }
+
+        public Task getTask(int rowIndex) {
+            return tasks.get(rowIndex);
+        }
+
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            if (rowIndex >= getRowCount() || columnIndex >= getColumnCount()) {
+                return null;
+            }
+            
+            if (columnIndex == 0 || aggregated) {
+                return tasks.get(rowIndex);
+            } else {
+                UserEntry currentUser = users.get(columnIndex - 1);
+                Task currentTask = tasks.get(rowIndex);
+                return currentTask.getStatuses().get(currentUser.getName());
+            }
+        }
+
+        public void taskChanged(Task task) {
+        	for (int i = 0; i < tasks.size(); ++i) {
+        		if (tasks.get(i).getId().equals(task.getId())) {
+        			updateTask(i, task);
+        			return;
+        		}
+        	}
+            
+            insertTask(task);
+        }
+
+        /**
+         * Updates changed rows in place, unless rows or columns have to be added or removed.
+         */
+        public void tasksChanged(TaskChanges changes) {
+            if (!changes.getAdded().isEmpty() || !changes.getRemoved().isEmpty()) {
+                updateTasks();
+                return;
+            }
+            Map<String, Integer> rows = new HashMap<>();
+            for (int i = 0; i < tasks.size(); ++i) {
+                rows.put(tasks.get(i).getId(), i);
+            }
+            Set<String> columns = new HashSet<>();
+            for (UserEntry ue : users) {
+                columns.add(ue.getName());
+            }
+            for (Task task : changes.getChanged()) {
+                Integer row = rows.get(task.getId());
+                if ((row != null) != isTaskRelevant(task) || !columns.containsAll(task.getStatuses().keySet())) {
+                    updateTasks();
+                    return;
+                }
+                if (row != null) {
+                    tasks.set(row, task);
+                }
+            }
+            if (!tasks.isEmpty()) {
+                fireTableRowsUpdated(0, tasks.size() - 1);
+            }
+        }
+
+        public void userChanged(UserEntry userEntry) {
+            updateTasks();
+        }
+
+        public void userPresenceChanged(UserEntry userEntry) {
+            // ignore
+        }
+
+        private void updateTask(int position, Task task) {
+            if ("remove".equals(task.getType())) {
+            	saveSort();
+                tasks.remove(position);
+                fireTableRowsDeleted(position, position);
+                updateTasks();
+                return;
+            }
+            
+            tasks.set(position, task);
+            fireTableRowsUpdated(position, position);
+            
+            Set<String> taskUsers = new HashSet<>();
+            taskUsers.addAll(task.getStatuses().keySet());
+            for (UserEntry ue : users) {
+            	taskUsers.remove(ue.getName());
+            }
+            if (!taskUsers.isEmpty()) {
+            	updateTasks();
+            }
+        }
+        
+        private boolean isAdmin() {
+            return UserRegistry.getInstance().findByName(username).isPower();
+        }
+        
+        private boolean isTaskRelevant(Task task) {
+            return isAdmin() || task.getStatus(username) != null;
+        }
+        
+        private boolean isUserRelevant(UserEntry user) {
+            return (isAdmin() && user.getName().toLowerCase().startsWith("hall")) || userHasTasks(user);
+        }
+        
+        private boolean userHasTasks(UserEntry user) {
+        	for (Task t : tasks) {
+        		if (t.getStatuses().keySet().contains(user.getName())) {
+        			return true;
+        		}
+        	}
+        	
+        	return false;
+        }
+
+        private void insertTask(Task task) {
+            if (isTaskRelevant(task)) {
+                tasks.add(task);
+                fireTableRowsInserted(tasks.size() - 1, tasks.size() - 1);
+                
+                Set<String> taskUsers = new HashSet<>();
+                taskUsers.addAll(task.getStatuses().keySet());
+                for (UserEntry ue : users) {
+                	taskUsers.remove(ue.getName());
+                }
+                if (!taskUsers.isEmpty()) {
+                	updateTasks();
+                }
+                
+                if (tasks.size() == 1) {
+                	sort();
+                }
+            }
+        }
+        
+        private void updateTasks() {
+        	saveSort();
+            tasks = new ArrayList<Task>();
+            users = new ArrayList<UserEntry>();
+            for (Task task : registry.getTasks()) {
+                if (isTaskRelevant(task)) {
+                    tasks.add(task);
+                }
+            }
+            for (UserEntry user : UserRegistry.getInstance().getUsers()) {
+                if (isUserRelevant(user)) {
+                    users.add(user);
+                }
+            }
+            Collections.sort(users);
+            renderer.clear();
+	        fireTableStructureChanged();
+	        for (int i = 1; sorter != null && i < getColumnCount(); ++i) {
+	        	sorter.setSortable(i, false);
+	        }
+	        setAutoResizeMode(aggregated || users.size() <= FITTING_COLUMNS ? AUTO_RESIZE_SUBSEQUENT_COLUMNS : AUTO_RESIZE_OFF);
+        }
+
+        public String getColumnName(int column) {
+            if (column == 0) {
+                return "Task";
+            }
+            return aggregated ? "Statuses" : users.get(column - 1).getName();
+        }
+        
+        @Override
+        public Class<?> getColumnClass(int i) {
+			return Task.class;
+        	
+        }
+    }
+
+
+    private class AdminTaskRenderer extends JComponent implements TableCellRenderer {
+        /**
+		 * 
+		 */
+		private static final long serialVersionUID = 1L;
+
+        private static final int MARGIN = 1;
+        private static final int MINIMUM_HEIGHT = 10;
+
+        /**
+         * Precomputed cells of a task, valid while the task revision stays the same.
+         */
+        private final Map<Task, TaskLayout> layouts = new WeakHashMap<Task, TaskLayout>();
+
+        private final Map<?, ?> desktopHints = (Map<?, ?>) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+
+        private CellLayout current;
+        private Task summary;
+
+        public AdminTaskRenderer() {
+            setOpaque(true);
+        }
+
+        public void clear() {
+            layouts.clear();
+        }
+
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            if (isSelected) {
+                setForeground(table.getSelectionForeground());
+                setBackground(table.getSelectionBackground());
+            } else {
+                setForeground(table.getForeground());
+                setBackground(table.getBackground());
+            }
+            setFont(table.getFont());
+
+            Task task = dataModel.getTask(table.convertRowIndexToModel(row));
+            int modelColumn = table.convertColumnIndexToModel(column);
+            int width = table.getColumnModel().getColumn(column).getWidth();
+
+            TaskLayout taskLayout = layouts.get(task);
+            if (taskLayout == null || taskLayout.revision != task.getRevision()
+                    || taskLayout.cells.length != dataModel.getColumnCount()) {
+                taskLayout = new TaskLayout(task.getRevision(), dataModel.getColumnCount());
+                layouts.put(task, taskLayout);
+            }
+
+            if (aggregated && modelColumn == SUMMARY_COLUMN) {
+                summary = task;
+                current = null;
+            } else {
+                CellLayout cell = taskLayout.cells[modelColumn];
+                if (cell == null || cell.width != width) {
+                    cell = layoutCell(task, value, width);
+                    taskLayout.cells[modelColumn] = cell;
+                }
+                summary = null;
+                current = cell;
+            }
+
+            int maxHeight = MINIMUM_HEIGHT;
+            for (CellLayout c : taskLayout.cells) {
+                if (c != null) {
+                    maxHeight = Math.max(maxHeight, c.height);
+                }
+            }
+            if (maxHeight != table.getRowHeight(row)) {
+                table.setRowHeight(row, maxHeight);
+            }
+
+            return this;
+        }
+
+        private CellLayout layoutCell(Task task, Object value, int width) {
+            String text = "";
+            String status = null;
+            if (value instanceof Task) {
+                text = " " + task.getTitle() + getScheduleText(task);
+                status = getDisplayStatus(task);
+            } else if (value instanceof TaskStatus) {
+                TaskStatus taskStatus = (TaskStatus) value;
+                text = taskStatus.getValue() == null ? "" : taskStatus.getValue();
+                status = taskStatus.getType();
+            }
+
+            Icon icon = status == null ? null : TaskIcon.STATUS.get(status);
+            int textWidth = width - 2 * MARGIN - (icon == null ? 0 : icon.getIconWidth());
+            FontMetrics metrics = getFontMetrics(getFont());
+            String[] lines = wrap(text, metrics, textWidth);
+
+            int height = Math.max(icon == null ? 0 : icon.getIconHeight(), lines.length * metrics.getHeight());
+            return new CellLayout(width, icon, lines, height + 2 * MARGIN);
+        }
+
+        private String getScheduleText(Task task) {
+            Task.ScheduleType type = task.getScheduleType();
+            if (type == Task.ScheduleType.NONE) {
+                return "";
+            }
+
+            long time = task.getScheduleTime() / 60000;
+            StringBuilder scheduled = new StringBuilder(" (");
+
+            if (type == Task.ScheduleType.CONTEST_START)
+                scheduled.append("start");
+            else if (type == Task.ScheduleType.CONTEST_END)
+                scheduled.append("end");
+
+            if (type != Task.ScheduleType.ABSOLUTE)
+                scheduled.append((time < 0) ? " - " : " + ");
+
+            appendTwoDigits(scheduled, Math.abs(time) / 60);
+            scheduled.append(':');
+            appendTwoDigits(scheduled, Math.abs(time) % 60);
+            return scheduled.append(')').toString();
+        }
+
+        private void appendTwoDigits(StringBuilder builder, long value) {
+            if (value < 10) {
+                builder.append('0');
+            }
+            builder.append(value);
+        }
+
+        private String getDisplayStatus(Task task) {
+            if (task.getScheduleType() != Task.ScheduleType.NONE) {
+                return task.getNeedsConfirmation()
+                        ? TaskActions.STATUS_SCHEDULED_CONFIRM
+                        : TaskActions.STATUS_SCHEDULED;
+            }
+
+            TaskStatus ourStatus = task.getStatus(username);
+            if (ourStatus != null) {
+                return ourStatus.getType();
+            }
+
+            return TaskActions.getSummaryStatus(task);
+        }
+
+        /**
+         * Breaks text into lines at spaces so that each line fits into the given width.
+         */
+        private String[] wrap(String text, FontMetrics metrics, int width) {
+            if (text.isEmpty() || metrics.stringWidth(text) <= width) {
+                return new String[] {text};
+            }
+
+            List<String> lines = new ArrayList<String>();
+            int start = 0;
+            int lastSpace = -1;
+            int lineWidth = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == ' ' && i > start) {
+                    lastSpace = i;
+                }
+                lineWidth += metrics.charWidth(c);
+                if (lineWidth > width && i > start) {
+                    int end = lastSpace > start ? lastSpace : i;
+                    lines.add(text.substring(start, end));
+                    start = lastSpace > start ? lastSpace + 1 : i;
+                    lastSpace = -1;
+                    lineWidth = 0;
+                    for (int j = start; j <= i; j++) {
+                        lineWidth += metrics.charWidth(text.charAt(j));
+                    }
+                }
+            }
+            lines.add(text.substring(start));
+            return lines.toArray(new String[lines.size()]);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+
+            if (summary != null) {
+                paintSummary(g, summary);
+                return;
+            }
+            if (current == null) {
+                return;
+            }
+
+            int x = MARGIN;
+            if (current.icon != null) {
+                current.icon.paintIcon(this, g, x, MARGIN);
+                x += current.icon.getIconWidth();
+            }
+
+            if (desktopHints != null && g instanceof Graphics2D) {
+                ((Graphics2D) g).addRenderingHints(desktopHints);
+            }
+            g.setColor(getForeground());
+            g.setFont(getFont());
+            FontMetrics metrics = g.getFontMetrics();
+            int y = MARGIN + metrics.getAscent();
+            for (String line : current.lines) {
+                g.drawString(line, x, y);
+                y += metrics.getHeight();
+            }
+        }
+
+        /**
+         * Paints a strip with a mark per user, colored by the user status,
+         * followed by the number of successful statuses out of all.
+         * When there are more users than pixels, the worst status is shown.
+         */
+        private void paintSummary(Graphics g, Task task) {
+            List<UserEntry> users = dataModel.users;
+            String count = getCountText(task);
+            FontMetrics metrics = g.getFontMetrics(getFont());
+            int stripWidth = getStripWidth(getWidth(), count, metrics);
+            int stripHeight = getHeight() - 2 * MARGIN - 4;
+
+            int lastX = -1;
+            int lastRank = -1;
+            for (int i = 0; i < users.size() && stripWidth > 0; i++) {
+                TaskStatus status = task.getStatus(users.get(i).getName());
+                int rank = getRank(status);
+                int x = MARGIN + i * stripWidth / users.size();
+                int nextX = MARGIN + (i + 1) * stripWidth / users.size();
+                if (x == lastX && rank <= lastRank) {
+                    continue;
+                }
+                g.setColor(STATUS_COLORS[rank]);
+                g.fillRect(x, MARGIN + 2, Math.max(1, nextX - x), stripHeight);
+                lastX = x;
+                lastRank = x == nextX ? rank : -1;
+            }
+
+            if (desktopHints != null && g instanceof Graphics2D) {
+                ((Graphics2D) g).addRenderingHints(desktopHints);
+            }
+            g.setColor(getForeground());
+            g.setFont(getFont());
+            g.drawString(count, getWidth() - MARGIN - metrics.stringWidth(count),
+                    (getHeight() - metrics.getHeight()) / 2 + metrics.getAscent());
+        }
+
+        /**
+         * Describes the status under the given point of a summary cell, or all statuses of the task.
+         */
+        public String getSummaryToolTip(Task task, int x, int width) {
+            List<UserEntry> users = dataModel.users;
+            String count = getCountText(task);
+            int stripWidth = getStripWidth(width, count, getFontMetrics(getFont()));
+            int index = stripWidth <= 0 ? -1 : (x - MARGIN) * users.size() / stripWidth;
+            if (x >= MARGIN && index >= 0 && index < users.size()) {
+                String name = users.get(index).getName();
+                TaskStatus status = task.getStatus(name);
+                if (status == null) {
+                    return name + ": not assigned";
+                }
+                String value = status.getValue();
+                return name + ": " + status.getType() + (value == null || value.isEmpty() ? "" : " - " + value);
+            }
+
+            int total = task.getStatuses().size();
+            int done = task.getStatusCount(TaskActions.STATUS_SUCCESS);
+            int failed = task.getStatusCount(TaskActions.STATUS_FAIL);
+            int running = task.getStatusCount(TaskActions.STATUS_RUNNING);
+            return "Done " + done + ", failed " + failed + ", running " + running
+                    + ", new " + (total - done - failed - running) + " of " + total;
+        }
+
+        private String getCountText(Task task) {
+            return " " + task.getStatusCount(TaskActions.STATUS_SUCCESS) + "/" + task.getStatuses().size();
+        }
+
+        private int getStripWidth(int width, String count, FontMetrics metrics) {
+            return width - 2 * MARGIN - metrics.stringWidth(count);
+        }
+
+        /**
+         * Orders statuses from unassigned to failed, indexing {@link #STATUS_COLORS}.
+         */
+        private int getRank(TaskStatus status) {
+            if (status == null) {
+                return 0;
+            }
+            if (status.getType() == null) {
+                return 2;
+            }
+            switch (status.getType()) {
+                case TaskActions.STATUS_SUCCESS:
+                    return 1;
+                case TaskActions.STATUS_RUNNING:
+                    return 3;
+                case TaskActions.STATUS_FAIL:
+                    return 4;
+                default:
+                    return 2;
+            }
+        }
+
+        // The following methods are overridden as a performance measure,
+        // same as in DefaultTableCellRenderer.
+
+        @Override
+        public void invalidate() {
+        }
+
+        @Override
+        public void validate() {
+        }
+
+        @Override
+        public void revalidate() {
+        }
+
+        @Override
+        public void repaint(long tm, int x, int y, int width, int height) {
+        }
+
+        @Override
+        public void repaint(Rectangle r) {
+        }
+
+        @Override
+        protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+        }
+    }
+
+    private static final Color[] STATUS_COLORS = {
+        new Color(0xeeeeee), new Color(0x43a047), new Color(0x90a4ae), new Color(0xffb300), new Color(0xe53935)
+    };
+
+    private static class TaskLayout {
+        private final int revision;
+        private final CellLayout[] cells;
+
+        TaskLayout(int revision, int columns) {
+            this.revision = revision;
+            this.cells = new CellLayout[columns];
+        }
+    }
+
+    private static class CellLayout {
+        private final int width;
+        private final Icon icon;
+        private final String[] lines;
+        private final int height;
+
+        CellLayout(int width, Icon icon, String[] lines, int height) {
+            this.width = width;
+            this.icon = icon;
+            this.lines = lines;
+            this.height = height;
+        }
+    }
+}
@@ -32,19 +32,40 @@ public class ChannelList {
     }
 
     public void subscribeTo(String channel) {
-        ChatWindow window = getOrCreateWindow(channel);
-        if (isSeparated)
-            window.setVisible(true);
-        channels.add(channel);
+        setSubscribed(channel, true);
+        saveSubscription(channel, true);
         notifySubscriptionChanged();
     }
 
     public void unsubscribeFrom(String channel) {
+        setSubscribed(channel, false);
+        saveSubscription(channel, false);
+        notifySubscriptionChanged();
+    }
+
+    /**
+     * Updates known channels and subscriptions with the state kept on the server.
+     */
+    public void setChannels(Map<String, Boolean> subscriptions) {
+        for (Map.Entry<String, Boolean> entry : subscriptions.entrySet()) {
+            setSubscribed(entry.getKey(), entry.getValue());
+        }
+        notifySubscriptionChanged();
+    }
+
+    private void setSubscribed(String channel, boolean subscribed) {
         ChatWindow window = getOrCreateWindow(channel);
         if (isSeparated)
-            window.setVisible(false);
-        channels.remove(channel);
-        notifySubscriptionChanged();
+            window.setVisible(subscribed);
+        if (subscribed)
+            channels.add(channel);
+        else
+            channels.remove(channel);
+    }
+
+    private void saveSubscription(String channel, boolean subscribed) {
+        if (client.chat != null)
+            client.chat.setSubscribed(channel, subscribed);
     }
 
     public boolean isSubscribed(String channel) {
@@ -0,0 +1,171 @@
+package ru.ifmo.neerc.chat.client;
+
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/**
+ * Find bar over a chat area. Searches as the query is typed,
+ * Enter and Shift+Enter jump to the next and previous hit, Escape closes the bar.
+ */
+public class ChatFindBar extends JPanel {
+    private final ChatArea chatArea;
+    private final JTextField queryField = new JTextField(20);
+    private final JLabel statusLabel = new JLabel();
+    private int[] rows = new int[0];
+
+    public ChatFindBar(ChatArea chatArea) {
+        super(new FlowLayout(FlowLayout.LEFT, 4, 2));
+        this.chatArea = chatArea;
+
+        add(new JLabel("Find:"));
+        add(queryField);
+        add(createButton("Previous", new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                move(false);
+            }
+        }));
+        add(createButton("Next", new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                move(true);
+            }
+        }));
+        add(createButton("Close", new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                close();
+            }
+        }));
+        add(statusLabel);
+
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                search();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                search();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                search();
+            }
+        });
+        bind(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "next", true);
+        bind(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, InputEvent.SHIFT_DOWN_MASK), "previous", false);
+        queryField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "close");
+        queryField.getActionMap().put("close", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                close();
+            }
+        });
+
+        setVisible(false);
+    }
+
+    /**
+     * Makes Ctrl+F in the given component open this find bar.
+     */
+    public void install(JComponent component) {
+        component.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK), "find");
+        component.getActionMap().put("find", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                open();
+            }
+        });
+    }
+
+    public void open() {
+        setVisible(true);
+        revalidate();
+        queryField.selectAll();
+        queryField.requestFocusInWindow();
+        search();
+    }
+
+    public void close() {
+        setVisible(false);
+        chatArea.search("");
+        chatArea.clearSelection();
+        rows = new int[0];
+    }
+
+    private JButton createButton(String text, ActionListener listener) {
+        JButton button = new JButton(text);
+        button.setFocusable(false);
+        button.addActionListener(listener);
+        return button;
+    }
+
+    private void bind(KeyStroke keyStroke, String name, final boolean forward) {
+        queryField.getInputMap().put(keyStroke, name);
+        queryField.getActionMap().put(name, new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                move(forward);
+            }
+        });
+    }
+
+    private void search() {
+        rows = chatArea.search(queryField.getText());
+        if (rows.length == 0) {
+            chatArea.clearSelection();
+            showStatus(-1);
+        } else {
+            // the latest hit is the most likely to be wanted
+            show(rows.length - 1);
+        }
+    }
+
+    private void move(boolean forward) {
+        // rows shift as messages arrive and expire, so search again
+        int current = chatArea.getSelectedRow();
+        rows = chatArea.search(queryField.getText());
+        if (rows.length == 0) {
+            showStatus(-1);
+            return;
+        }
+        int hit = forward ? 0 : rows.length - 1;
+        for (int i = 0; i < rows.length; i++) {
+            if (forward && rows[i] > current) {
+                hit = i;
+                break;
+            }
+            if (!forward && rows[rows.length - 1 - i] < current) {
+                hit = rows.length - 1 - i;
+                break;
+            }
+        }
+        show(hit);
+    }
+
+    private void show(int hit) {
+        chatArea.showRow(rows[hit]);
+        showStatus(hit);
+    }
+
+    private void showStatus(int hit) {
+        if (queryField.getText().trim().isEmpty()) {
+            statusLabel.setText("");
+        } else if (hit < 0) {
+            statusLabel.setForeground(Color.red);
+            statusLabel.setText("Not found");
+        } else {
+            statusLabel.setForeground(Color.black);
+            statusLabel.setText((hit + 1) + " of " + rows.length);
+        }
+    }
+}
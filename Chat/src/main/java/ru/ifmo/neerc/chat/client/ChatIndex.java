@@ -0,0 +1,195 @@
+package ru.ifmo.neerc.chat.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index of words in chat messages, kept in step with the chat model.
+ *
+ * Words are runs of letters and digits, compared ignoring case.
+ * A message matches a query when every word of the query is a prefix
+ * of some word of the message text or of its author name, so that
+ * the results can be updated on each key stroke.
+ */
+class ChatIndex {
+    private final TreeMap<String, Set<Message>> postings = new TreeMap<String, Set<Message>>();
+    private final Map<Message, String[]> words = new IdentityHashMap<Message, String[]>();
+
+    public synchronized void add(Message message) {
+        if (words.containsKey(message)) {
+            return;
+        }
+        String[] tokens = tokenize(getIndexedText(message));
+        for (int i = 0; i < tokens.length; i++) {
+            // share word instances between messages
+            String key = postings.floorKey(tokens[i]);
+            Set<Message> messages;
+            if (tokens[i].equals(key)) {
+                tokens[i] = key;
+                messages = postings.get(key);
+            } else {
+                messages = new HashSet<Message>(4);
+                postings.put(tokens[i], messages);
+            }
+            messages.add(message);
+        }
+        words.put(message, tokens);
+    }
+
+    public synchronized void remove(Message message) {
+        String[] tokens = words.remove(message);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Set<Message> messages = postings.get(token);
+            messages.remove(message);
+            if (messages.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return words.size();
+    }
+
+    /**
+     * Returns messages matching the query in chronological order.
+     */
+    public synchronized List<Message> search(String query) {
+        String[] terms = tokenize(query);
+        if (terms.length == 0) {
+            return Collections.emptyList();
+        }
+
+        // start from the rarest term and check the others against message words
+        SortedMap<String, Set<Message>> rarest = null;
+        int rarestCount = Integer.MAX_VALUE;
+        for (String term : terms) {
+            SortedMap<String, Set<Message>> range = prefixRange(term);
+            int count = 0;
+            for (Set<Message> messages : range.values()) {
+                count += messages.size();
+            }
+            if (count < rarestCount) {
+                rarest = range;
+                rarestCount = count;
+            }
+        }
+
+        List<Message> result = new ArrayList<Message>(rarestCount);
+        Set<Message> seen = Collections.newSetFromMap(new IdentityHashMap<Message, Boolean>());
+        for (Set<Message> messages : rarest.values()) {
+            for (Message message : messages) {
+                if (seen.add(message) && matches(words.get(message), terms)) {
+                    result.add(message);
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private SortedMap<String, Set<Message>> prefixRange(String term) {
+        return postings.subMap(term, term + Character.MAX_VALUE);
+    }
+
+    private static boolean matches(String[] tokens, String[] terms) {
+        for (String term : terms) {
+            boolean found = false;
+            for (String token : tokens) {
+                if (token.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getIndexedText(Message message) {
+        if (message.getUser() == null) {
+            return message.getText();
+        }
+        return message.getUser().getName() + " " + message.getText();
+    }
+
+    /**
+     * Splits the text into distinct lower case words.
+     */
+    static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        List<String> tokens = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!tokens.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    /**
+     * Finds the parts of the text matched by the query terms.
+     *
+     * @return start and end offsets of the matched word prefixes, in pairs
+     */
+    static int[] findMatches(String text, String[] terms) {
+        int[] matches = new int[0];
+        if (terms.length == 0) {
+            return matches;
+        }
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                int length = 0;
+                for (String term : terms) {
+                    if (word.startsWith(term)) {
+                        length = Math.max(length, term.length());
+                    }
+                }
+                if (length > 0) {
+                    if (count + 2 > matches.length) {
+                        int[] grown = new int[count * 2 + 4];
+                        System.arraycopy(matches, 0, grown, 0, count);
+                        matches = grown;
+                    }
+                    matches[count++] = start;
+                    matches[count++] = Math.min(start + length, i);
+                }
+                start = -1;
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(matches, 0, result, 0, count);
+        return result;
+    }
+}
@@ -4,8 +4,8 @@ import javax.swing.JTextArea;
 import javax.swing.text.BadLocationException;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import ru.ifmo.neerc.chat.ChatSyntax;
 
 public class ChatInputArea extends JTextArea {
     private AbstractChatClient client;
@@ -24,9 +24,9 @@ public class ChatInputArea extends JTextArea {
                     if (text.isEmpty())
                         return;
 
-                    Matcher privateMatcher = Pattern.compile("^([a-zA-Z0-9%]+)>", Pattern.DOTALL).matcher(text);
-                    if (privateMatcher.find() && privateMatcher.groupCount() > 0) {
-                        messageLocalHistory.setLastPrivateAddressees(privateMatcher.group(1));
+                    int addresseeLength = ChatSyntax.getAddresseeLength(text);
+                    if (addresseeLength > 0) {
+                        messageLocalHistory.setLastPrivateAddressees(text.substring(0, addresseeLength));
                     }
 
                     messageLocalHistory.add(text);
@@ -0,0 +1,421 @@
+package ru.ifmo.neerc.chat.client;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.ifmo.neerc.chat.ChatMessage;
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.chat.user.UserRegistry;
+import ru.ifmo.neerc.chat.utils.Scheduler;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskActions;
+
+/**
+ * Local record of everything shown in the chat.
+ *
+ * Messages are appended to a binary file by a background writer, which also
+ * echoes them to the chat log. Each record is prefixed with its length, so a
+ * record torn by a crash is detected and cut off on the next start.
+ * Every {@link #INDEX_STEP}th record is noted in a small index file, so that
+ * the last messages are found without reading the whole transcript.
+ * At the first message of a new day the transcript is moved aside under the
+ * day it was started, and only the last {@link #KEEP_DAYS} such files are kept.
+ */
+public class ChatTranscript {
+    private static final Logger LOG = LoggerFactory.getLogger("Chat");
+
+    private static final int MAGIC = 0x4e455452;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int INDEX_STEP = 64;
+    private static final int INDEX_ENTRY_LENGTH = 20;
+    private static final long WRITE_DELAY = 200;
+    private static final int KEEP_DAYS = Integer.getInteger("transcript.days", 7);
+    private static final String DAY_FORMAT = "yyyy-MM-dd";
+
+    private static final byte USER = 0;
+    private static final byte STATUS = 1;
+    private static final byte TASK = 2;
+
+    private final File file;
+    private final File indexFile;
+    private final Deque<Message> pending = new ArrayDeque<Message>();
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    private long length;
+    private long count;
+    private Date lastActivity;
+    /**
+     * Start of the day after the one the transcript was started on.
+     */
+    private long rotateAt;
+
+    private ChatTranscript(File file) {
+        this.file = file;
+        this.indexFile = new File(file.getPath() + ".idx");
+    }
+
+    /**
+     * Opens the transcript of the given user, creating it if needed.
+     */
+    public static ChatTranscript open(String username) {
+        String room = System.getProperty("room", "neerc");
+        File file = new File(System.getProperty("transcript.file", "." + username + "-" + room + ".transcript"));
+        final ChatTranscript transcript = new ChatTranscript(file);
+        try {
+            transcript.recover();
+        } catch (IOException e) {
+            LOG.warn("Unable to open transcript " + file + ", starting a new one", e);
+            file.delete();
+            try {
+                transcript.recover();
+            } catch (IOException ex) {
+                LOG.warn("Unable to create transcript " + file, ex);
+            }
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                transcript.write();
+            }
+        }));
+        return transcript;
+    }
+
+    /**
+     * Returns the time of the last chat message in the transcript, or null.
+     */
+    public synchronized Date getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Queues a message to be written.
+     */
+    public void append(Message message) {
+        synchronized (this) {
+            pending.add(message);
+            if (message instanceof UserMessage) {
+                lastActivity = message.getDate();
+            }
+        }
+        Scheduler.getInstance().coalesce("Transcript", writeTask, WRITE_DELAY);
+    }
+
+    /**
+     * Reads up to the given number of last messages, except status messages.
+     */
+    public synchronized List<Message> readLast(int limit) throws IOException {
+        List<Message> messages = new ArrayList<Message>();
+        if (count == 0 || limit <= 0) {
+            return messages;
+        }
+        long first = Math.max(0, count - limit);
+        long ordinal = 0;
+        long offset = HEADER_LENGTH;
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "r")) {
+            long entry = Math.min(first / INDEX_STEP, index.length() / INDEX_ENTRY_LENGTH) - 1;
+            if (entry >= 0) {
+                index.seek(entry * INDEX_ENTRY_LENGTH);
+                ordinal = index.readInt();
+                index.readLong();
+                offset = index.readLong();
+            }
+        } catch (IOException e) {
+            LOG.debug("No usable transcript index, reading from the start");
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offset);
+            for (; ordinal < count; ordinal++) {
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                if (ordinal >= first) {
+                    Message message = decode(record);
+                    if (!(message instanceof StatusMessage)) {
+                        messages.add(message);
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Validates the file, cuts off a torn last record and restores the counters.
+     */
+    private void recover() throws IOException {
+        if (!file.exists()) {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            indexFile.delete();
+            length = HEADER_LENGTH;
+            count = 0;
+            lastActivity = null;
+            rotateAt = nextDay(System.currentTimeMillis());
+            return;
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "rw")) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown transcript format");
+            }
+
+            // start from the last index entry which points into the file
+            long ordinal = 0;
+            long offset = HEADER_LENGTH;
+            try (RandomAccessFile index = new RandomAccessFile(indexFile, "rw")) {
+                long entries = index.length() / INDEX_ENTRY_LENGTH;
+                while (entries > 0) {
+                    index.seek((entries - 1) * INDEX_ENTRY_LENGTH);
+                    long entryOrdinal = index.readInt();
+                    index.readLong();
+                    long entryOffset = index.readLong();
+                    if (entryOffset <= in.length()) {
+                        ordinal = entryOrdinal;
+                        offset = entryOffset;
+                        break;
+                    }
+                    entries--;
+                }
+                index.setLength(entries * INDEX_ENTRY_LENGTH);
+            }
+
+            in.seek(offset);
+            Date last = null;
+            while (true) {
+                long start = in.getFilePointer();
+                try {
+                    byte[] record = new byte[in.readInt()];
+                    in.readFully(record);
+                    Message message = decode(record);
+                    if (message instanceof UserMessage) {
+                        last = message.getDate();
+                    }
+                    ordinal++;
+                } catch (EOFException | RuntimeException e) {
+                    if (start < in.length()) {
+                        LOG.warn("Cutting off a torn record at the end of transcript {}", file);
+                        in.setLength(start);
+                    }
+                    offset = start;
+                    break;
+                }
+            }
+            length = offset;
+            count = ordinal;
+            lastActivity = last;
+
+            if (count > 0) {
+                in.seek(HEADER_LENGTH + 4);
+                rotateAt = nextDay(in.readLong());
+            } else {
+                rotateAt = nextDay(System.currentTimeMillis());
+            }
+        }
+
+        // drop index entries of records which were cut off or never written
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "rw")) {
+            long entries = index.length() / INDEX_ENTRY_LENGTH;
+            while (entries > 0) {
+                index.seek((entries - 1) * INDEX_ENTRY_LENGTH + 12);
+                if (index.readLong() < length) {
+                    break;
+                }
+                entries--;
+            }
+            index.setLength(entries * INDEX_ENTRY_LENGTH);
+        }
+
+        if (System.currentTimeMillis() >= rotateAt) {
+            rotate();
+        }
+    }
+
+    /**
+     * Moves the transcript aside under the day it was started and starts a new one.
+     */
+    private void rotate() throws IOException {
+        if (count > 0) {
+            String day = new SimpleDateFormat(DAY_FORMAT).format(new Date(rotateAt - 1));
+            File archive = new File(file.getPath() + "." + day);
+            Files.move(file.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            indexFile.delete();
+            LOG.debug("Moved transcript to {}", archive);
+            deleteOldDays();
+        }
+        recover();
+    }
+
+    private void deleteOldDays() {
+        final String prefix = file.getName() + ".";
+        File[] days = file.getAbsoluteFile().getParentFile().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && name.length() == prefix.length() + DAY_FORMAT.length();
+            }
+        });
+        if (days == null || days.length <= KEEP_DAYS) {
+            return;
+        }
+        // names end with the day, so they sort by date
+        Arrays.sort(days);
+        for (int i = 0; i < days.length - KEEP_DAYS; i++) {
+            if (!days[i].delete()) {
+                LOG.warn("Unable to delete old transcript {}", days[i]);
+            }
+        }
+    }
+
+    private static long nextDay(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    private void write() {
+        List<Message> messages;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            messages = new ArrayList<Message>(pending);
+            pending.clear();
+        }
+
+        for (Message message : messages) {
+            LOG.info(message.toString());
+        }
+
+        synchronized (this) {
+            List<Message> day = new ArrayList<Message>();
+            for (Message message : messages) {
+                long time = message.getDate().getTime();
+                if (time >= rotateAt) {
+                    append(day);
+                    day.clear();
+                    try {
+                        rotate();
+                    } catch (IOException e) {
+                        LOG.warn("Unable to start a new transcript " + file, e);
+                    }
+                    rotateAt = Math.max(rotateAt, nextDay(time));
+                }
+                day.add(message);
+            }
+            append(day);
+        }
+    }
+
+    private void append(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+             DataOutputStream index = new DataOutputStream(new FileOutputStream(indexFile, true))) {
+            for (Message message : messages) {
+                if (count % INDEX_STEP == 0 && count > 0) {
+                    index.writeInt((int) count);
+                    index.writeLong(message.getDate().getTime());
+                    index.writeLong(length);
+                }
+                byte[] record = encode(message);
+                out.writeInt(record.length);
+                out.write(record);
+                length += 4 + record.length;
+                count++;
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to write transcript " + file, e);
+        }
+    }
+
+    private static byte[] encode(Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(message.getDate().getTime());
+        if (message instanceof UserMessage) {
+            ChatMessage chatMessage = ((UserMessage) message).getMessage();
+            out.writeByte(USER);
+            writeString(out, chatMessage.getUser() == null ? "" : chatMessage.getUser().getName());
+            writeString(out, chatMessage.getRawText());
+            writeString(out, chatMessage.getId() == null ? "" : chatMessage.getId());
+        } else if (message instanceof TaskMessage) {
+            out.writeByte(TASK);
+            writeString(out, ((TaskMessage) message).getTask().getTitle());
+        } else {
+            out.writeByte(STATUS);
+            writeString(out, message instanceof StatusMessage ? ((StatusMessage) message).getStatus() : message.getText());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Message decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        Date date = new Date(in.readLong());
+        switch (in.readByte()) {
+            case USER:
+                String username = readString(in);
+                UserEntry user = username.isEmpty() ? null : UserRegistry.getInstance().findOrRegister(username);
+                ChatMessage chatMessage = new ChatMessage(readString(in), user, null, date);
+                // records written before ids were kept end here
+                String id = in.available() > 0 ? readString(in) : "";
+                chatMessage.setId(id.isEmpty() ? null : id);
+                return new UserMessage(chatMessage);
+            case TASK:
+                return new TaskMessage(new Task(null, TaskActions.TYPE_TODO, readString(in), date));
+            case STATUS:
+                return new StatusMessage(readString(in), date);
+            default:
+                throw new IOException("Unknown transcript record");
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,221 @@
+package ru.ifmo.neerc.chat.client;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.chat.user.UserRegistry;
+import ru.ifmo.neerc.chat.user.UserRegistryListener;
+import ru.ifmo.neerc.chat.utils.Scheduler;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskChanges;
+import ru.ifmo.neerc.task.TaskRegistry;
+import ru.ifmo.neerc.task.TaskRegistryListener;
+import ru.ifmo.neerc.task.TaskStatus;
+
+/**
+ * Keeps the last known users and tasks in a local file, so that the client
+ * can show them at startup before the server answers. Chat messages are
+ * kept separately in the {@link ChatTranscript}.
+ *
+ * The file is a small binary snapshot. It is rewritten in the background
+ * shortly after the state changes and replaced atomically, so that a crash
+ * never leaves a half-written cache behind. The snapshot is encoded while
+ * holding the registries' own locks, only writing it out happens unlocked.
+ */
+public class ClientStateCache implements UserRegistryListener, TaskRegistryListener {
+    private static final Logger LOG = LoggerFactory.getLogger(ClientStateCache.class);
+
+    private static final int MAGIC = 0x4e455243;
+    private static final int VERSION = 3;
+
+    private static final long SAVE_DELAY = 2000;
+
+    private final File file;
+
+    private final Runnable saveTask = new Runnable() {
+        @Override
+        public void run() {
+            save();
+        }
+    };
+
+    private ClientStateCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the cache of the given user and fills the registries from it.
+     * Must be called before any other registry listeners are added,
+     * so that restored tasks are not reported as new ones.
+     */
+    public static ClientStateCache open(String username) {
+        String room = System.getProperty("room", "neerc");
+        File file = new File(System.getProperty("cache.file", "." + username + "-" + room + ".cache"));
+        final ClientStateCache cache = new ClientStateCache(file);
+
+        try {
+            cache.load();
+        } catch (FileNotFoundException e) {
+            LOG.debug("No state cache found at {}", file);
+        } catch (IOException e) {
+            LOG.warn("Unable to read state cache " + file, e);
+        }
+
+        UserRegistry.getInstance().addListener(cache);
+        TaskRegistry.getInstance().addListener(cache);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.save();
+            }
+        }));
+        return cache;
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOG.warn("Ignoring state cache {} of unknown format", file);
+                return;
+            }
+
+            UserRegistry userRegistry = UserRegistry.getInstance();
+            int userCount = in.readInt();
+            for (int i = 0; i < userCount; i++) {
+                String name = readString(in);
+                String group = readString(in);
+                boolean power = in.readBoolean();
+
+                userRegistry.findOrRegister(name).setGroup(group);
+                userRegistry.setPower(name, power);
+            }
+
+            TaskRegistry taskRegistry = TaskRegistry.getInstance();
+            int taskCount = in.readInt();
+            for (int i = 0; i < taskCount; i++) {
+                Task task = new Task(readString(in), readString(in), readString(in), new Date(in.readLong()));
+                Task.ScheduleType scheduleType = Task.ScheduleType.values()[in.readByte()];
+                task.schedule(scheduleType, in.readLong());
+                task.setNeedsConfirmation(in.readBoolean());
+                int statusCount = in.readInt();
+                for (int j = 0; j < statusCount; j++) {
+                    task.setStatus(readString(in), readString(in), readString(in));
+                }
+                taskRegistry.update(task);
+            }
+        }
+        LOG.info("Restored state from {}", file);
+    }
+
+    private void scheduleSave() {
+        Scheduler.getInstance().coalesce("State cache", saveTask, SAVE_DELAY);
+    }
+
+    private synchronized void save() {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(temp.toPath(), snapshot());
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Unable to write state cache " + file, e);
+        }
+    }
+
+    private static byte[] snapshot() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        UserRegistry userRegistry = UserRegistry.getInstance();
+        synchronized (userRegistry) {
+            UserEntry[] users = userRegistry.serialize();
+            out.writeInt(users.length);
+            for (UserEntry user : users) {
+                writeString(out, user.getName());
+                writeString(out, user.getGroup());
+                out.writeBoolean(user.isPower());
+            }
+        }
+
+        Collection<Task> tasks = TaskRegistry.getInstance().snapshot();
+        out.writeInt(tasks.size());
+        for (Task task : tasks) {
+            synchronized (task) {
+                writeString(out, task.getId());
+                writeString(out, task.getType());
+                writeString(out, task.getTitle());
+                out.writeLong(task.getDate().getTime());
+                out.writeByte(task.getScheduleType().ordinal());
+                out.writeLong(task.getScheduleTime());
+                out.writeBoolean(task.getNeedsConfirmation());
+                Map<String, TaskStatus> statuses = task.getStatuses();
+                out.writeInt(statuses.size());
+                for (Map.Entry<String, TaskStatus> entry : statuses.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue().getType());
+                    writeString(out, entry.getValue().getValue());
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public void userChanged(UserEntry userEntry) {
+        scheduleSave();
+    }
+
+    @Override
+    public void userPresenceChanged(UserEntry userEntry) {
+        // presence is not cached
+    }
+
+    @Override
+    public void taskChanged(Task task) {
+        scheduleSave();
+    }
+
+    @Override
+    public void tasksChanged(TaskChanges changes) {
+        scheduleSave();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.ifmo.neerc.chat.client;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Image icon which reads its image only when it is first measured or painted,
+ * so that icons which are never shown do not slow down the client start.
+ */
+public class LazyIcon extends ImageIcon {
+    private final String resource;
+    private boolean loaded;
+
+    public LazyIcon(String resource) {
+        this.resource = resource;
+    }
+
+    private synchronized void load() {
+        if (!loaded) {
+            loaded = true;
+            setImage(Toolkit.getDefaultToolkit().getImage(LazyIcon.class.getResource(resource)));
+        }
+    }
+
+    @Override
+    public Image getImage() {
+        load();
+        return super.getImage();
+    }
+
+    @Override
+    public int getImageLoadStatus() {
+        load();
+        return super.getImageLoadStatus();
+    }
+
+    @Override
+    public int getIconWidth() {
+        load();
+        return super.getIconWidth();
+    }
+
+    @Override
+    public int getIconHeight() {
+        load();
+        return super.getIconHeight();
+    }
+
+    @Override
+    public synchronized void paintIcon(Component c, Graphics g, int x, int y) {
+        load();
+        super.paintIcon(c, g, x, y);
+    }
+}
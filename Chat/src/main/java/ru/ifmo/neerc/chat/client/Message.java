@@ -11,6 +11,11 @@ public interface Message extends Comparable<Message> {
 
     Date getDate();
 
+    /**
+     * Returns the id the message is known by on the server, or null if it has none.
+     */
+    String getId();
+
     UserEntry getUser();
 
     String getText();
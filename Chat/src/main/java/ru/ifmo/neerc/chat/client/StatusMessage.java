@@ -30,6 +30,10 @@ public class StatusMessage extends AbstractMessage {
         return null;
     }
 
+    public String getStatus() {
+        return text;
+    }
+
     @Override
     public String getText() {
         return ">>>>>   " + text + "   <<<<<";
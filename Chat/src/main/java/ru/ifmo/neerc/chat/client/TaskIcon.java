@@ -14,72 +14,72 @@ public final class TaskIcon {
     public static final Map<Integer, ImageIcon> ACTION = new HashMap<Integer, ImageIcon>();
     public static final Map<String, ImageIcon> TYPE = new HashMap<String, ImageIcon>();
 
-    public static final ImageIcon iconTaskAssign = new ImageIcon(AdminTaskPanel.class.getResource("res/task_assign.gif"));
-    public static final ImageIcon iconTaskRemove = new ImageIcon(AdminTaskPanel.class.getResource("res/task_remove.gif"));
-    public static final ImageIcon iconTaskImport = new ImageIcon(AdminTaskPanel.class.getResource("res/task_import.png"));
+    public static final ImageIcon iconTaskAssign = new LazyIcon("res/task_assign.gif");
+    public static final ImageIcon iconTaskRemove = new LazyIcon("res/task_remove.gif");
+    public static final ImageIcon iconTaskImport = new LazyIcon("res/task_import.png");
 
     static {
         STATUS.put(
                 TaskActions.STATUS_SUCCESS,
-                new ImageIcon(TaskIcon.class.getResource("res/task_state_done.gif"))
+                new LazyIcon("res/task_state_done.gif")
         );
         STATUS.put(
                 TaskActions.STATUS_FAIL,
-                new ImageIcon(TaskIcon.class.getResource("res/task_state_fail.png"))
+                new LazyIcon("res/task_state_fail.png")
         );
         STATUS.put(
                 TaskActions.STATUS_RUNNING,
-                new ImageIcon(TaskIcon.class.getResource("res/task_state_inprogress.png"))
+                new LazyIcon("res/task_state_inprogress.png")
         );
         STATUS.put(
                 TaskActions.STATUS_NEW,
-                new ImageIcon(TaskIcon.class.getResource("res/task_state_new.gif"))
+                new LazyIcon("res/task_state_new.gif")
         );
         STATUS.put(
                 TaskActions.STATUS_ACK,
-                new ImageIcon(TaskIcon.class.getResource("res/task_state_new.gif"))
+                new LazyIcon("res/task_state_new.gif")
         );
         STATUS.put(
                 TaskActions.STATUS_SCHEDULED,
-                new ImageIcon(TaskIcon.class.getResource("res/task_state_scheduled.png"))
+                new LazyIcon("res/task_state_scheduled.png")
         );
         STATUS.put(
                 TaskActions.STATUS_SCHEDULED_CONFIRM,
-                new ImageIcon(TaskIcon.class.getResource("res/task_state_scheduled_confirm.png"))
+                new LazyIcon("res/task_state_scheduled_confirm.png")
         );
 
         ACTION.put(
                 TaskActions.ACTION_DONE,
-                new ImageIcon(TaskIcon.class.getResource("res/task_action_complete.gif"))
+                new LazyIcon("res/task_action_complete.gif")
         );
         ACTION.put(
                 TaskActions.ACTION_FAIL,
-                new ImageIcon(TaskIcon.class.getResource("res/task_action_fail.png"))
+                new LazyIcon("res/task_action_fail.png")
         );
         ACTION.put(
                 TaskActions.ACTION_START,
-                new ImageIcon(TaskIcon.class.getResource("res/task_action_start.png"))
+                new LazyIcon("res/task_action_start.png")
         );
 
         TYPE.put(
                 TaskActions.TYPE_TODO,
-                new ImageIcon(AdminTaskPanel.class.getResource("res/task_add_todo.png"))
+                new LazyIcon("res/task_add_todo.png")
         );
         TYPE.put(
                 TaskActions.TYPE_TODOFAIL,
-                new ImageIcon(AdminTaskPanel.class.getResource("res/task_add_todofail.png"))
+                new LazyIcon("res/task_add_todofail.png")
         );
         TYPE.put(
                 TaskActions.TYPE_CONFIRM,
-                new ImageIcon(AdminTaskPanel.class.getResource("res/task_add_confirm.png"))
+                new LazyIcon("res/task_add_confirm.png")
         );
         TYPE.put(
                 TaskActions.TYPE_REASON,
-                new ImageIcon(AdminTaskPanel.class.getResource("res/task_add_text.png"))
+                new LazyIcon("res/task_add_text.png")
         );
         TYPE.put(
                 TaskActions.TYPE_QUESTION,
-                new ImageIcon(AdminTaskPanel.class.getResource("res/task_add_quest.png"))
+                new LazyIcon("res/task_add_quest.png")
         );
     }
 
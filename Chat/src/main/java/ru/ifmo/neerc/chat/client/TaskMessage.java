@@ -15,6 +15,10 @@ public class TaskMessage extends AbstractMessage {
         this.task = task;
     }
 
+    public Task getTask() {
+        return task;
+    }
+
     @Override
     public Date getDate() {
         return task.getDate();
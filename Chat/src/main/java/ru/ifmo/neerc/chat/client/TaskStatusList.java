@@ -0,0 +1,85 @@
+package ru.ifmo.neerc.chat.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskStatus;
+
+/**
+ * Statuses of a single task by user, to look into a task
+ * when the task list shows only a summary of its statuses.
+ */
+public class TaskStatusList extends JTable {
+    private static final String[] COLUMNS = {"User", "Status", "Comment"};
+
+    private final StatusModel model = new StatusModel();
+
+    public TaskStatusList() {
+        setModel(model);
+        setAutoCreateRowSorter(true);
+        getColumnModel().getColumn(1).setCellRenderer(new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setIcon(value == null ? null : TaskIcon.STATUS.get(value));
+                setText(value == null ? "" : value.toString());
+            }
+        });
+    }
+
+    /**
+     * Shows statuses of the task for the given users, in their order, or nothing if the task is null.
+     */
+    public void setTask(Task task, List<UserEntry> users) {
+        model.setTask(task, users);
+    }
+
+    private static class StatusModel extends AbstractTableModel {
+        private final List<String> names = new ArrayList<String>();
+        private final List<TaskStatus> statuses = new ArrayList<TaskStatus>();
+
+        void setTask(Task task, List<UserEntry> users) {
+            names.clear();
+            statuses.clear();
+            if (task != null) {
+                for (UserEntry user : users) {
+                    TaskStatus status = task.getStatus(user.getName());
+                    if (status != null) {
+                        names.add(user.getName());
+                        statuses.add(status);
+                    }
+                }
+            }
+            fireTableDataChanged();
+        }
+
+        public int getRowCount() {
+            return names.size();
+        }
+
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            switch (columnIndex) {
+                case 0:
+                    return names.get(rowIndex);
+                case 1:
+                    return statuses.get(rowIndex).getType();
+                default:
+                    return statuses.get(rowIndex).getValue();
+            }
+        }
+    }
+}
@@ -15,6 +15,10 @@ public class UserMessage extends AbstractMessage {
         this.message = message;
     }
 
+    public ChatMessage getMessage() {
+        return message;
+    }
+
     @Override
     public String getChannel() {
         if (message.getType() == ChatMessage.Type.channel) {
@@ -29,6 +33,11 @@ public class UserMessage extends AbstractMessage {
         return message.getDate();
     }
 
+    @Override
+    public String getId() {
+        return message.getId();
+    }
+
     @Override
     public UserEntry getUser() {
         return message.getUser();
@@ -0,0 +1,48 @@
+package ru.ifmo.neerc.chat.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Loads, without initializing, every class of the jar it is started from and exits.
+ * Used to dump the class data sharing archive of the client without
+ * starting the client itself, so that no display or server is needed.
+ *
+ * Usage: java -XX:ArchiveClassesAtExit=chat-client.jsa -cp chat-client.jar ru.ifmo.neerc.chat.utils.ClassPreloader
+ */
+public final class ClassPreloader {
+    private static final String SUFFIX = ".class";
+
+    /**
+     * Hide utility class contructor.
+     */
+    private ClassPreloader() {
+    }
+
+    public static void main(String[] args) throws IOException, URISyntaxException {
+        File jar = new File(ClassPreloader.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        ClassLoader loader = ClassPreloader.class.getClassLoader();
+        int loaded = 0;
+        int skipped = 0;
+        try (JarFile file = new JarFile(jar)) {
+            for (Enumeration<JarEntry> entries = file.entries(); entries.hasMoreElements(); ) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(SUFFIX) || name.startsWith("META-INF/")) {
+                    continue;
+                }
+                try {
+                    Class.forName(name.substring(0, name.length() - SUFFIX.length()).replace('/', '.'), false, loader);
+                    loaded++;
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // optional dependencies of libraries are not packaged
+                    skipped++;
+                }
+            }
+        }
+        System.out.println("Loaded " + loaded + " classes, skipped " + skipped);
+    }
+}
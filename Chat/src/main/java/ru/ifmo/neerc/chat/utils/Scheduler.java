@@ -0,0 +1,222 @@
+package ru.ifmo.neerc.chat.utils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor for all background work of the client.
+ *
+ * Every task has a name, which is used for statistics and for coalescing:
+ * while a named task is waiting to run, repeated requests for it are merged.
+ * Nothing runs unless it was asked for, so an idle client stays idle.
+ * The statistics are logged when the client exits.
+ */
+public final class Scheduler {
+    private static final Logger LOG = LoggerFactory.getLogger(Scheduler.class);
+
+    private static final Scheduler INSTANCE = new Scheduler();
+
+    private static final int THREADS = 2;
+    private static final long SLOW_TASK_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<String, Keyed> pending = new HashMap<String, Keyed>();
+    private final Map<String, Statistics> statistics = new TreeMap<String, Statistics>();
+    private final Map<String, ExecutorService> exclusiveExecutors = new HashMap<String, ExecutorService>();
+    private final Set<String> exclusiveActive = new HashSet<String>();
+
+    public static Scheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Hide default constructor.
+     */
+    private Scheduler() {
+        executor = new ScheduledThreadPoolExecutor(THREADS, new DaemonThreadFactory("Scheduler"));
+        executor.setRemoveOnCancelPolicy(true);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                LOG.info("Background tasks:\n{}", getStatistics());
+            }
+        }));
+    }
+
+    public ScheduledFuture<?> execute(String name, Runnable task) {
+        return schedule(name, task, 0);
+    }
+
+    public ScheduledFuture<?> schedule(String name, Runnable task, long delay) {
+        return executor.schedule(new Measured(name, task), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the task after the delay, unless a task with the same name is already
+     * waiting to run, in which case that one serves this request as well.
+     */
+    public synchronized void coalesce(String name, Runnable task, long delay) {
+        if (!pending.containsKey(name)) {
+            schedule(new Keyed(name, task), delay);
+        }
+    }
+
+    /**
+     * Runs the task once the delay has passed without new requests with the same name.
+     */
+    public synchronized void debounce(String name, Runnable task, long delay) {
+        Keyed previous = pending.get(name);
+        if (previous != null) {
+            previous.future.cancel(false);
+        }
+        schedule(new Keyed(name, task), delay);
+    }
+
+    private void schedule(Keyed keyed, long delay) {
+        pending.put(keyed.name, keyed);
+        keyed.future = schedule(keyed.name, keyed, delay);
+    }
+
+    /**
+     * Runs a task which may block for long, such as connecting to the server,
+     * on a thread of its own, so that it never holds up the shared threads.
+     * The request is dropped while a task with the same name is still running.
+     */
+    public synchronized void executeExclusive(final String name, final Runnable task) {
+        if (!exclusiveActive.add(name)) {
+            LOG.debug("Task {} is already running", name);
+            return;
+        }
+        ExecutorService exclusive = exclusiveExecutors.get(name);
+        if (exclusive == null) {
+            exclusive = Executors.newSingleThreadExecutor(new DaemonThreadFactory(name));
+            exclusiveExecutors.put(name, exclusive);
+        }
+        exclusive.execute(new Measured(name, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    synchronized (Scheduler.this) {
+                        exclusiveActive.remove(name);
+                    }
+                }
+            }
+        }));
+    }
+
+    private String getStatistics() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (statistics) {
+            for (Map.Entry<String, Statistics> entry : statistics.entrySet()) {
+                builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private void record(String name, long nanos) {
+        synchronized (statistics) {
+            Statistics stats = statistics.get(name);
+            if (stats == null) {
+                statistics.put(name, stats = new Statistics());
+            }
+            stats.add(nanos);
+        }
+        if (nanos > SLOW_TASK_NANOS) {
+            LOG.debug("Task {} took {} ms", name, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    private class Measured implements Runnable {
+        private final String name;
+        private final Runnable task;
+
+        Measured(String name, Runnable task) {
+            this.name = name;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                LOG.error("Task " + name + " failed", e);
+            } finally {
+                record(name, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private class Keyed implements Runnable {
+        private final String name;
+        private final Runnable task;
+        private ScheduledFuture<?> future;
+
+        Keyed(String name, Runnable task) {
+            this.name = name;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (Scheduler.this) {
+                if (pending.get(name) == this) {
+                    pending.remove(name);
+                }
+            }
+            task.run();
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class Statistics {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        @Override
+        public String toString() {
+            return count + " runs, " + TimeUnit.NANOSECONDS.toMillis(totalNanos) + " ms total, "
+                    + TimeUnit.NANOSECONDS.toMillis(maxNanos) + " ms max";
+        }
+    }
+}
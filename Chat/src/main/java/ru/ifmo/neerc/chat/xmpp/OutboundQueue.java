@@ -0,0 +1,119 @@
+package ru.ifmo.neerc.chat.xmpp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jivesoftware.smack.SmackException;
+import org.jivesoftware.smack.XMPPConnection;
+import org.jivesoftware.smack.packet.Stanza;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stanzas waiting to be written to the server by a thread of their own,
+ * so that a stalled connection never blocks the caller.
+ *
+ * Stanzas are written one after another without waiting for replies, in the
+ * order they were queued. A stanza with a key replaces the waiting one with
+ * the same key and takes the last place, so that it is never written before
+ * stanzas queued ahead of it. While there is no connection stanzas wait,
+ * and they are written once the connection is back. A stanza which cannot
+ * be written for any other reason is dropped.
+ */
+class OutboundQueue {
+    private static final Logger LOG = LoggerFactory.getLogger(OutboundQueue.class);
+
+    private static final int MAX_PENDING = Integer.getInteger("outbound.max", 1000);
+
+    private final Map<Object, Stanza> pending = new LinkedHashMap<Object, Stanza>();
+    private XMPPConnection connection;
+    private final Thread writer;
+
+    OutboundQueue() {
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "Outbound");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the stanza without waiting for it to be written.
+     *
+     * @param key the key of stanzas superseding each other, or null
+     */
+    public synchronized void send(Object key, Stanza stanza) {
+        if (key != null) {
+            pending.remove(key);
+        } else {
+            key = new Object();
+        }
+        pending.put(key, stanza);
+        if (pending.size() > MAX_PENDING) {
+            Iterator<Stanza> iterator = pending.values().iterator();
+            LOG.warn("Too many stanzas waiting, dropped {}", iterator.next());
+            iterator.remove();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Sets the connection to write to, once it is ready for the stanzas, or null to hold them.
+     */
+    public synchronized void setConnection(XMPPConnection connection) {
+        this.connection = connection;
+        if (connection != null && !pending.isEmpty()) {
+            LOG.debug("Writing {} waiting stanzas", pending.size());
+        }
+        notifyAll();
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    private void write() {
+        while (true) {
+            XMPPConnection target;
+            Object key;
+            Stanza stanza;
+            synchronized (this) {
+                while (connection == null || pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                target = connection;
+                Map.Entry<Object, Stanza> next = pending.entrySet().iterator().next();
+                key = next.getKey();
+                stanza = next.getValue();
+            }
+            try {
+                target.sendStanza(stanza);
+            } catch (SmackException.NotConnectedException e) {
+                LOG.info("Not connected, {} stanzas wait for the connection", size());
+                synchronized (this) {
+                    if (connection == target) {
+                        connection = null;
+                    }
+                }
+                continue;
+            } catch (RuntimeException e) {
+                LOG.error("Dropped stanza which could not be written: " + stanza, e);
+            }
+            synchronized (this) {
+                // unless superseded while it was written
+                if (pending.get(key) == stanza) {
+                    pending.remove(key);
+                }
+            }
+        }
+    }
+}
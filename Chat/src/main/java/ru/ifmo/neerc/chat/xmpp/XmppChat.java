@@ -4,7 +4,14 @@ import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.security.KeyManagementException;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.jivesoftware.smack.AbstractConnectionListener;
 import org.jivesoftware.smack.AbstractXMPPConnection;
@@ -15,11 +22,14 @@ import org.jivesoftware.smack.PresenceListener;
 import org.jivesoftware.smack.ReconnectionManager;
 import org.jivesoftware.smack.SmackConfiguration;
 import org.jivesoftware.smack.SmackException;
+import org.jivesoftware.smack.StanzaListener;
 import org.jivesoftware.smack.XMPPConnection;
 import org.jivesoftware.smack.XMPPException;
 import org.jivesoftware.smack.filter.StanzaExtensionFilter;
+import org.jivesoftware.smack.filter.StanzaTypeFilter;
 import org.jivesoftware.smack.packet.ExtensionElement;
 import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.Message;
 import org.jivesoftware.smack.packet.Presence;
 import org.jivesoftware.smack.packet.Stanza;
 import org.jivesoftware.smack.tcp.XMPPTCPConnection;
@@ -32,17 +42,22 @@ import org.jivesoftware.smackx.muc.MultiUserChatManager;
 import org.jivesoftware.smackx.delay.packet.DelayInformation;
 import org.jivesoftware.smackx.muc.packet.MUCUser;
 import org.jivesoftware.smackx.muc.packet.MUCItem;
+import org.jivesoftware.smackx.ping.PingFailedListener;
 import org.jivesoftware.smackx.ping.PingManager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ru.ifmo.neerc.chat.AbstractChat;
+import ru.ifmo.neerc.chat.ChannelsListener;
 import ru.ifmo.neerc.chat.ChatListener;
 import ru.ifmo.neerc.chat.ChatMessage;
 import ru.ifmo.neerc.chat.user.UserEntry;
 import ru.ifmo.neerc.chat.user.UserRegistry;
 import ru.ifmo.neerc.chat.utils.DebugUtils;
+import ru.ifmo.neerc.chat.utils.Scheduler;
+import ru.ifmo.neerc.clock.Clock;
+import ru.ifmo.neerc.clock.ClockListener;
 import ru.ifmo.neerc.chat.xmpp.provider.*;
 import ru.ifmo.neerc.chat.xmpp.packet.*;
 import ru.ifmo.neerc.task.Task;
@@ -63,28 +78,61 @@ public class XmppChat extends AbstractChat {
     private static final String ROOM = ROOM_NAME + "@conference." + SERVER_HOSTNAME;
     private static final String NEERC_SERVICE = ROOM_NAME + "@neerc." + SERVER_HOSTNAME;
 
+    private static final int RESUMPTION_TIME = Integer.getInteger("resumption.time", 300);
+    private static final int MIN_PING_INTERVAL = Integer.getInteger("ping.min", 5);
+    private static final int MAX_PING_INTERVAL = Integer.getInteger("ping.max", 60);
+
     private MultiUserChat muc;
-    private AbstractXMPPConnection connection;
+    private volatile AbstractXMPPConnection connection;
     
     private String name;
     private String password = System.getProperty("password", "12345");
 
     private ConnectionListener connectionListener;
+    private final Set<ClockListener> clockListeners = new CopyOnWriteArraySet<ClockListener>();
+    private final Set<ChannelsListener> channelsListeners = new CopyOnWriteArraySet<ChannelsListener>();
     private Date lastActivity = null;
 
+    private static boolean smackInitialized = false;
+
+    private final Scheduler scheduler = Scheduler.getInstance();
+    private final OutboundQueue outbound = new OutboundQueue();
+    /*
+     * Subscriptions changed here which the service has not confirmed yet,
+     * so that channels from the service, e.g. in the snapshot after a reconnect, do not undo them.
+     */
+    private final ConcurrentMap<String, Boolean> pendingSubscriptions = new ConcurrentHashMap<String, Boolean>();
+    private final Runnable pingBackoff = new Runnable() {
+        @Override
+        public void run() {
+            backOffPing();
+        }
+    };
+
     public XmppChat(
             String name,
             ConnectionListener connectionListener
     ) {
         this.name = name;
         this.connectionListener = connectionListener;
+    }
+
+    /**
+     * Initializes Smack on the first connection rather than in the constructor,
+     * so that it happens on the connecting thread and does not delay the UI.
+     */
+    private static synchronized void initSmack() {
+        if (smackInitialized) {
+            return;
+        }
+        smackInitialized = true;
 
         NeercTaskPacketExtensionProvider.register();
         NeercClockPacketExtensionProvider.register();
         NeercIQProvider.register();
 
         ReconnectionManager.setEnabledPerDefault(true);
-        PingManager.setDefaultPingInterval(5);
+        PingManager.setDefaultPingInterval(MIN_PING_INTERVAL);
     }
 
     public synchronized void disconnect() {
@@ -94,6 +142,7 @@ public class XmppChat extends AbstractChat {
     }
     
     public synchronized void connect() {
+        initSmack();
         disconnect();
         LOG.info("connecting to server");
 
@@ -115,16 +164,32 @@ public class XmppChat extends AbstractChat {
 
         XMPPTCPConnectionConfiguration config = builder.build();
 
-        connection = new XMPPTCPConnection(config);
+        XMPPTCPConnection tcpConnection = new XMPPTCPConnection(config);
+        // resume the session after short drops instead of rejoining the room
+        tcpConnection.setUseStreamManagement(true);
+        tcpConnection.setUseStreamManagementResumption(true);
+        tcpConnection.setPreferredResumptionTime(RESUMPTION_TIME);
+
+        connection = tcpConnection;
         connection.addConnectionListener(new MyConnectionListener());
         connection.addConnectionListener(connectionListener);
         connection.addAsyncStanzaListener(new TaskPacketListener(), new StanzaExtensionFilter(new NeercTaskPacketExtension()));
+        connection.addAsyncStanzaListener(new ClockPacketListener(), new StanzaExtensionFilter(new NeercClockPacketExtension()));
+        connection.addAsyncStanzaListener(new ChannelsPacketListener(), new StanzaTypeFilter(NeercChannelListIQ.class));
 
         muc = MultiUserChatManager.getInstanceFor(connection)
             .getMultiUserChat(ROOM);
         muc.addMessageListener(new MyMessageListener());
         muc.addParticipantListener(new MyPresenceListener());
 
+        PingManager.getInstanceFor(connection).registerPingFailedListener(new PingFailedListener() {
+            @Override
+            public void pingFailed() {
+                LOG.debug("Ping failed, probing every {} s", MIN_PING_INTERVAL);
+                resetPing();
+            }
+        });
+
         // Connect to the server
         try {
             connection.connect();
@@ -135,11 +200,31 @@ public class XmppChat extends AbstractChat {
         }
     }
     
+    public void addClockListener(ClockListener listener) {
+        clockListeners.add(listener);
+    }
+
+    public void addChannelsListener(ChannelsListener listener) {
+        channelsListeners.add(listener);
+    }
+
+    public void setLastActivity(Date lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
     public boolean isConnected() {
         return muc.isJoined();
     }
     
     private void join() {
+        // ask for the snapshot before joining, so that it travels along with the join
+        PacketCollector snapshot = null;
+        try {
+            snapshot = sendQuery("snapshot");
+        } catch (SmackException e) {
+            LOG.error("Unable to request snapshot", e);
+        }
+
         try {
             // Joins the new room and retrieves history
             DiscussionHistory history = new DiscussionHistory();
@@ -167,6 +252,16 @@ public class XmppChat extends AbstractChat {
         }
 
         try {
+            if (snapshot != null) {
+                try {
+                    applySnapshot(snapshot.<IQ>nextResultOrThrow());
+                    return;
+                } catch (XMPPException.XMPPErrorException e) {
+                    LOG.info("Snapshot is not supported by NEERC service, querying users and tasks");
+                } catch (SmackException e) {
+                    LOG.warn("No snapshot from NEERC service, querying users and tasks", e);
+                }
+            }
             queryUsers();
             queryTasks();
         } catch (XMPPException | SmackException e) {
@@ -174,6 +269,19 @@ public class XmppChat extends AbstractChat {
         }
     }
 
+    private void applySnapshot(IQ iq) throws XMPPException {
+        if (!(iq instanceof NeercSnapshotIQ)) {
+            throw new XMPPException.XMPPErrorException("unparsed iq packet", null);
+        }
+        NeercSnapshotIQ packet = (NeercSnapshotIQ) iq;
+        updateUsers(packet.getUsers());
+        updateTasks(packet.getTasks());
+        updateChannels(packet.getChannels());
+        if (packet.getClock() != null) {
+            updateClock(packet.getClock());
+        }
+    }
+
     public void debugConnection() {
         LOG.debug("User: {}", connection.getUser());
         LOG.debug("Connected: {}", connection.isConnected());
@@ -181,66 +289,64 @@ public class XmppChat extends AbstractChat {
         LOG.debug("Joined: {}", muc.isJoined());
     }
 
+    /**
+     * Queues the message, which is sent to the room once it is joined.
+     */
     @Override
     public void sendMessage(ChatMessage message) {
-        try {
-            String text = message.getText();
-            char c = ' ';
-            switch (message.getType()) {
-                case info:
-                    c = '#';
-                    break;
-                case question:
-                    c = '?';
-                    break;
-                case urgent:
-                    c = '!';
-                    break;
-            }
-            for (int i = 0; i < message.getPriority(); i++) {
-                text = c + text;
-            }
-            if (message.getTo() != null) {
-                text = message.getTo() + "> " + text;
-            }
-            muc.sendMessage(text);
-        } catch (SmackException e) {
-            LOG.error("Unable to write message", e);
-        }
+        Message packet = new Message(ROOM);
+        packet.setType(Message.Type.groupchat);
+        packet.setBody(message.getRawText());
+        outbound.send(null, packet);
     }
     
+    /**
+     * Queues the task, replacing the waiting version of the same task.
+     */
 	@Override
 	public void sendTask(Task task) {
         if (task.getScheduleType() == Task.ScheduleType.NONE) {
             NeercTaskIQ packet = new NeercTaskIQ(task);
             packet.setTo(NEERC_SERVICE);
-            try {
-                connection.sendStanza(packet);
-            } catch (SmackException e) {
-                LOG.error("Unable to write task", e);
-            }
+            outbound.send(task.getId() != null ? "task " + task.getId() : null, packet);
         }
         else
             TaskRegistry.getInstance().update(task);
     }
 
+    /**
+     * Queues the status, replacing the waiting status of the same task.
+     */
 	@Override
 	public void sendTaskStatus(Task task, TaskStatus status) {
 		NeercTaskResultIQ packet = new NeercTaskResultIQ(task, status);
 		packet.setTo(NEERC_SERVICE);
-        try {
-            connection.sendStanza(packet);
-        } catch (SmackException e) {
-            LOG.error("Unable to write task status", e);
-        }
+        outbound.send("status " + task.getId(), packet);
+    }
+
+    /**
+     * Queues the subscription change to the service, which keeps subscriptions
+     * across reconnects and delivers channel messages only to subscribers.
+     * The change replaces the waiting change of the same channel, and holds
+     * until the service confirms it in its reply.
+     */
+    @Override
+    public void setSubscribed(String channel, boolean subscribed) {
+        pendingSubscriptions.put(channel, subscribed);
+        NeercChannelListIQ packet = new NeercChannelListIQ();
+        packet.setSubscribed(channel, subscribed);
+        packet.setTo(NEERC_SERVICE);
+        outbound.send("channel " + channel, packet);
     }
 
 	public IQ query(String what) throws XMPPException, SmackException {
+        return sendQuery(what).nextResultOrThrow();
+    }
+
+    private PacketCollector sendQuery(String what) throws SmackException {
 		IQ packet = new NeercIQ(what);
 		packet.setTo(NEERC_SERVICE);
-		
-        PacketCollector collector = connection.createPacketCollectorAndSend(packet);
-        return collector.nextResultOrThrow();
+        return connection.createPacketCollectorAndSend(packet);
     }
 
 	public void queryUsers() throws XMPPException, SmackException {
@@ -248,9 +354,12 @@ public class XmppChat extends AbstractChat {
 		if (!(iq instanceof NeercUserListIQ)) {
 		    throw new XMPPException.XMPPErrorException("unparsed iq packet", null);
 		}
-		NeercUserListIQ packet = (NeercUserListIQ) iq;
+		updateUsers(((NeercUserListIQ) iq).getUsers());
+	}
+
+	private void updateUsers(Collection<UserEntry> users) {
         UserRegistry registry = UserRegistry.getInstance();
-		for (UserEntry user: packet.getUsers()) {
+		for (UserEntry user: users) {
 		    // TODO: replace with registry.add(UserEntry user)
 		    UserEntry reguser = registry.findOrRegister(user.getName());
             reguser.setGroup(user.getGroup());
@@ -263,20 +372,120 @@ public class XmppChat extends AbstractChat {
 		if (!(iq instanceof NeercTaskListIQ)) {
 		    throw new XMPPException.XMPPErrorException("unparsed iq packet", null);
 		}
-		NeercTaskListIQ packet = (NeercTaskListIQ) iq;
-		TaskRegistry.getInstance().reset();
-		for (Task task: packet.getTasks()) {
-			TaskRegistry.getInstance().update(task);
-		}
+		updateTasks(((NeercTaskListIQ) iq).getTasks());
+	}
+
+	private void updateTasks(Collection<Task> tasks) {
+		TaskRegistry.getInstance().replaceAll(tasks);
 	}
 
+    /**
+     * Starts pinging often, then doubles the interval each time it passes
+     * while the connection stays up. A quiet hall rarely pings the server,
+     * and a failed ping starts over.
+     */
+    private void resetPing() {
+        XMPPConnection connection = this.connection;
+        if (connection != null) {
+            PingManager.getInstanceFor(connection).setPingInterval(MIN_PING_INTERVAL);
+        }
+        scheduler.debounce("Ping backoff", pingBackoff, MIN_PING_INTERVAL * 1000L);
+    }
+
+    private void backOffPing() {
+        XMPPConnection connection = this.connection;
+        if (connection == null || !connection.isAuthenticated()) {
+            return;
+        }
+        PingManager pingManager = PingManager.getInstanceFor(connection);
+        int interval = Math.min(pingManager.getPingInterval() * 2, MAX_PING_INTERVAL);
+        pingManager.setPingInterval(interval);
+        if (interval < MAX_PING_INTERVAL) {
+            scheduler.debounce("Ping backoff", pingBackoff, interval * 1000L);
+        }
+    }
+
     private class MyConnectionListener extends AbstractConnectionListener {
         @Override
         public void authenticated(XMPPConnection connection, boolean resumed) {
-            join();
+            resetPing();
+            if (resumed) {
+                // the room, roster and registries are intact, missed stanzas are redelivered
+                LOG.info("Stream resumed");
+            } else {
+                // presences of the new session will tell who is online
+                UserRegistry registry = UserRegistry.getInstance();
+                for (UserEntry user : registry.getUsers()) {
+                    registry.putOffline(user.getName());
+                }
+                join();
+            }
+            if (muc.isJoined()) {
+                outbound.setConnection(connection);
+            } else {
+                LOG.warn("Not in the room, {} stanzas wait for the next connection", outbound.size());
+            }
 
             debugConnection();
         }
+
+        @Override
+        public void connectionClosed() {
+            outbound.setConnection(null);
+        }
+
+        @Override
+        public void connectionClosedOnError(Exception e) {
+            outbound.setConnection(null);
+        }
+    }
+
+    private void updateChannels(Map<String, Boolean> channels) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        if (!pendingSubscriptions.isEmpty()) {
+            channels = new LinkedHashMap<String, Boolean>(channels);
+            for (Map.Entry<String, Boolean> entry : pendingSubscriptions.entrySet()) {
+                if (channels.containsKey(entry.getKey())) {
+                    channels.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        for (ChannelsListener listener : channelsListeners) {
+            listener.channelsChanged(channels);
+        }
+    }
+
+    /**
+     * Takes channels replied to subscription changes, which confirm the changes they agree with.
+     */
+    private class ChannelsPacketListener implements StanzaListener {
+        @Override
+        public void processPacket(Stanza packet) {
+            NeercChannelListIQ reply = (NeercChannelListIQ) packet;
+            if (reply.getType() != IQ.Type.result) {
+                return;
+            }
+            for (Map.Entry<String, Boolean> entry : reply.getChannels().entrySet()) {
+                pendingSubscriptions.remove(entry.getKey(), entry.getValue());
+            }
+            updateChannels(reply.getChannels());
+        }
+    }
+
+    private void updateClock(Clock clock) {
+        for (ClockListener listener : clockListeners) {
+            listener.clockChanged(clock);
+        }
+    }
+
+    private class ClockPacketListener implements StanzaListener {
+        @Override
+        public void processPacket(Stanza packet) {
+            NeercClockPacketExtension extension = packet.getExtension("x", XmlUtils.NAMESPACE_CLOCK);
+            updateClock(extension.getClock());
+        }
     }
 
     private class MyPresenceListener implements PresenceListener {
@@ -298,6 +507,27 @@ public class XmppChat extends AbstractChat {
         }
     }
 
+    /**
+     * Mirrors the routing of addressed messages on the server,
+     * for servers which still broadcast them to everyone.
+     */
+    private boolean isAddressedToMe(ChatMessage message) {
+        if (name.equals(message.getUser().getName()) || name.equalsIgnoreCase(message.getTo())) {
+            return true;
+        }
+        UserRegistry registry = UserRegistry.getInstance();
+        UserEntry me = registry.findByName(name);
+        if (me != null && me.isPower()) {
+            return true;
+        }
+        for (UserEntry user : registry.findMatchingUsers(message.getTo())) {
+            if (name.equalsIgnoreCase(user.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private class MyMessageListener implements MessageListener {
         @Override
         public void processMessage(org.jivesoftware.smack.packet.Message message) {
@@ -320,11 +550,11 @@ public class XmppChat extends AbstractChat {
                 null,
                 timestamp
             );
+            chatMessage.setId(message.getStanzaId());
 
             if (chatMessage.getType() != ChatMessage.Type.channel
                     && chatMessage.getTo() != null
-                    && !name.equals(chatMessage.getUser().getName())
-                    && !name.equals(chatMessage.getTo())) {
+                    && !isAddressedToMe(chatMessage)) {
                 return;
             }
 
@@ -0,0 +1,69 @@
+package ru.ifmo.neerc.chat.xmpp.packet;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jivesoftware.smack.packet.IQ;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import ru.ifmo.neerc.chat.xmpp.provider.PullParserSource;
+import ru.ifmo.neerc.chat.xmpp.provider.SmackXmlSink;
+import ru.ifmo.neerc.utils.XmlCodec;
+
+/**
+ * Channels of a room with the user's subscriptions.
+ * Sent to the service, it carries subscribe and unsubscribe requests instead.
+ */
+public class NeercChannelListIQ extends NeercIQ {
+	private Map<String, Boolean> channels = new LinkedHashMap<String, Boolean>();
+	private Map<String, Boolean> subscriptions = new LinkedHashMap<String, Boolean>();
+
+	public NeercChannelListIQ() {
+		super("channels");
+	}
+
+	/**
+	 * Returns channels mapped to whether the user is subscribed to them.
+	 */
+	public Map<String, Boolean> getChannels() {
+		return Collections.unmodifiableMap(channels);
+	}
+
+	public void addChannel(String channel, boolean subscribed) {
+		channels.put(channel, subscribed);
+	}
+
+	public void setSubscribed(String channel, boolean subscribed) {
+		subscriptions.put(channel, subscribed);
+		setType(Type.set);
+	}
+
+    @Override
+    protected IQ.IQChildElementXmlStringBuilder getIQChildElementBuilder(IQ.IQChildElementXmlStringBuilder xml) {
+        xml.rightAngleBracket();
+
+        SmackXmlSink sink = new SmackXmlSink(xml);
+		for (Map.Entry<String, Boolean> entry : subscriptions.entrySet()) {
+            XmlCodec.writeSubscription(sink, entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, Boolean> entry : channels.entrySet()) {
+            XmlCodec.writeChannel(sink, entry.getKey(), entry.getValue());
+		}
+
+        return xml;
+	}
+
+    @Override
+	public void parse(XmlPullParser parser) throws XmlPullParserException, IOException {
+		XmlCodec.Source source = new PullParserSource(parser);
+		for (XmlCodec.Source child = source.nextChild(); child != null; child = source.nextChild()) {
+			if (XmlCodec.CHANNEL.equals(child.getName())) {
+				addChannel(XmlCodec.readChannelName(child), XmlCodec.readChannelSubscribed(child));
+			}
+		}
+	}
+}
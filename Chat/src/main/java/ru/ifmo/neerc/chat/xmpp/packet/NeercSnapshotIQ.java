@@ -0,0 +1,93 @@
+package ru.ifmo.neerc.chat.xmpp.packet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jivesoftware.smack.packet.IQ;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.chat.xmpp.provider.PullParserSource;
+import ru.ifmo.neerc.chat.xmpp.provider.SmackXmlSink;
+import ru.ifmo.neerc.clock.Clock;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.utils.XmlCodec;
+
+/**
+ * Users, tasks, channels and clock of a room, answered to a single query.
+ */
+public class NeercSnapshotIQ extends NeercIQ {
+	private Collection<UserEntry> users = new ArrayList<UserEntry>();
+	private Collection<Task> tasks = new ArrayList<Task>();
+	private Map<String, Boolean> channels = new LinkedHashMap<String, Boolean>();
+	private Clock clock;
+
+	public NeercSnapshotIQ() {
+		super("snapshot");
+	}
+
+	public Collection<UserEntry> getUsers() {
+		return Collections.unmodifiableCollection(users);
+	}
+
+	public Collection<Task> getTasks() {
+		return Collections.unmodifiableCollection(tasks);
+	}
+
+	/**
+	 * Returns channels mapped to whether the user is subscribed to them.
+	 */
+	public Map<String, Boolean> getChannels() {
+		return Collections.unmodifiableMap(channels);
+	}
+
+	/**
+	 * Returns the clock, or null if the server did not know it yet.
+	 */
+	public Clock getClock() {
+		return clock;
+	}
+
+    @Override
+    protected IQ.IQChildElementXmlStringBuilder getIQChildElementBuilder(IQ.IQChildElementXmlStringBuilder xml) {
+        xml.rightAngleBracket();
+
+        SmackXmlSink sink = new SmackXmlSink(xml);
+		for (UserEntry user : users) {
+            XmlCodec.writeUser(sink, user);
+		}
+		for (Task task : tasks) {
+            XmlCodec.writeTask(sink, task);
+		}
+		for (Map.Entry<String, Boolean> entry : channels.entrySet()) {
+            XmlCodec.writeChannel(sink, entry.getKey(), entry.getValue());
+		}
+		if (clock != null) {
+            XmlCodec.writeClock(sink, clock);
+		}
+
+        return xml;
+	}
+
+    @Override
+	public void parse(XmlPullParser parser) throws XmlPullParserException, IOException {
+		XmlCodec.Source source = new PullParserSource(parser);
+		for (XmlCodec.Source child = source.nextChild(); child != null; child = source.nextChild()) {
+			if (XmlCodec.USER.equals(child.getName())) {
+				users.add(XmlCodec.readUser(child));
+			} else if (XmlCodec.TASK.equals(child.getName())) {
+				tasks.add(XmlCodec.readTask(child));
+			} else if (XmlCodec.CHANNEL.equals(child.getName())) {
+				channels.put(XmlCodec.readChannelName(child), XmlCodec.readChannelSubscribed(child));
+			} else if (XmlCodec.CLOCK.equals(child.getName())) {
+				clock = XmlCodec.readClock(child);
+			}
+		}
+	}
+}
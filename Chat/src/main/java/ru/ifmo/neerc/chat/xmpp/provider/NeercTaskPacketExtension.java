@@ -4,6 +4,7 @@ import org.jivesoftware.smack.packet.ExtensionElement;
 import org.jivesoftware.smack.util.XmlStringBuilder;
 
 import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.utils.XmlCodec;
 import ru.ifmo.neerc.utils.XmlUtils;
 
 /**
@@ -42,7 +43,7 @@ public class NeercTaskPacketExtension implements ExtensionElement {
         xml.rightAngleBracket();
 
         if (getTask() != null) {
-            // TODO
+            XmlCodec.writeTask(new SmackXmlSink(xml), getTask());
         }
 
         xml.closeElement(getElementName());
@@ -1,6 +1,5 @@
 package ru.ifmo.neerc.chat.xmpp.provider;
 
-import java.util.Date;
 import java.io.IOException;
 
 import org.jivesoftware.smack.provider.ExtensionElementProvider;
@@ -9,8 +8,7 @@ import org.jivesoftware.smack.provider.ProviderManager;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import ru.ifmo.neerc.task.Task;
-import ru.ifmo.neerc.utils.XmlUtils;
+import ru.ifmo.neerc.utils.XmlCodec;
 
 /**
  * @author Evgeny Mandrikov
@@ -27,51 +25,12 @@ public class NeercTaskPacketExtensionProvider extends ExtensionElementProvider<N
     @Override
     public NeercTaskPacketExtension parse(XmlPullParser parser, int initialDepth) throws XmlPullParserException, IOException {
         NeercTaskPacketExtension neercPacketExtension = new NeercTaskPacketExtension();
-        boolean done = false;
-        while (!done) {
-            int eventType = parser.next();
-            if (eventType == XmlPullParser.START_TAG) {
-                if (parser.getName().equals("task")) {
-                    neercPacketExtension.setTask(parseTask(parser));
-                }
-            } else if (eventType == XmlPullParser.END_TAG) {
-                if (parser.getName().equals("x")) {
-                    done = true;
-                }
+        XmlCodec.Source source = new PullParserSource(parser);
+        for (XmlCodec.Source child = source.nextChild(); child != null; child = source.nextChild()) {
+            if (XmlCodec.TASK.equals(child.getName())) {
+                neercPacketExtension.setTask(XmlCodec.readTask(child));
             }
         }
         return neercPacketExtension;
     }
-
-    private Task parseTask(XmlPullParser parser) throws XmlPullParserException, IOException {
-    	Date date = new Date();
-    	String timestamp = parser.getAttributeValue("", "timestamp");
-    	if (timestamp != null) {
-    		date = new Date(Long.parseLong(timestamp));
-    	}
-        Task task = new Task(
-                parser.getAttributeValue("", "id"),
-                parser.getAttributeValue("", "type"),
-                parser.getAttributeValue("", "title"),
-                date
-        );
-        boolean done = false;
-        while (!done) {
-            int eventType = parser.next();
-            if (eventType == XmlPullParser.START_TAG) {
-                if (parser.getName().equals("status")) {
-                    task.setStatus(
-                            parser.getAttributeValue("", "for"),
-                            parser.getAttributeValue("", "type"),
-                            parser.getAttributeValue("", "value")
-                    );
-                }
-            } else if (eventType == XmlPullParser.END_TAG) {
-                if (parser.getName().equals("task")) {
-                    done = true;
-                }
-            }
-        }
-        return task;
-    }
 }
@@ -0,0 +1,52 @@
+package ru.ifmo.neerc.chat.xmpp.provider;
+
+import java.io.IOException;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import ru.ifmo.neerc.utils.XmlCodec;
+
+/**
+ * Reads the element the pull parser is positioned at with {@link XmlCodec}.
+ * When the element is read to the end, the parser is left at its end tag.
+ */
+public class PullParserSource implements XmlCodec.Source {
+    private final XmlPullParser parser;
+    private final String name;
+    private final int depth;
+
+    public PullParserSource(XmlPullParser parser) {
+        this.parser = parser;
+        this.name = parser.getName();
+        this.depth = parser.getDepth();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        return parser.getAttributeValue("", name);
+    }
+
+    @Override
+    public XmlCodec.Source nextChild() throws IOException {
+        try {
+            while (true) {
+                int eventType = parser.next();
+                if (eventType == XmlPullParser.START_TAG && parser.getDepth() == depth + 1) {
+                    return new PullParserSource(parser);
+                } else if (eventType == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+                    return null;
+                } else if (eventType == XmlPullParser.END_DOCUMENT) {
+                    throw new IOException("Unexpected end of document in " + name);
+                }
+            }
+        } catch (XmlPullParserException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ru.ifmo.neerc.chat.xmpp.provider;
+
+import java.io.IOException;
+
+import org.jivesoftware.smack.util.XmlStringBuilder;
+
+import ru.ifmo.neerc.utils.XmlCodec;
+
+/**
+ * Writes elements produced by {@link XmlCodec} into a Smack string builder.
+ */
+public class SmackXmlSink implements XmlCodec.Sink {
+    private final XmlStringBuilder xml;
+    private boolean startTagOpen;
+
+    public SmackXmlSink(XmlStringBuilder xml) {
+        this(xml, false);
+    }
+
+    /**
+     * @param startTagOpen whether the builder ends with a half open element,
+     *                     whose attributes are going to be written
+     */
+    public SmackXmlSink(XmlStringBuilder xml, boolean startTagOpen) {
+        this.xml = xml;
+        this.startTagOpen = startTagOpen;
+    }
+
+    @Override
+    public void startElement(String name) {
+        finish();
+        xml.halfOpenElement(name);
+        startTagOpen = true;
+    }
+
+    @Override
+    public void attribute(String name, String value) {
+        if (value == null) {
+            return;
+        }
+        // escaped by the codec, as the builder leaves tabs and line breaks as they are
+        xml.append(' ').append(name).append("=\"");
+        try {
+            XmlCodec.escapeAttribute(xml, value);
+        } catch (IOException e) {
+            // written to memory
+            throw new IllegalStateException(e);
+        }
+        xml.append('"');
+    }
+
+    @Override
+    public void endElement(String name) {
+        if (startTagOpen) {
+            xml.closeEmptyElement();
+            startTagOpen = false;
+        } else {
+            xml.closeElement(name);
+        }
+    }
+
+    /**
+     * Closes the start tag of the current element, if it is still open.
+     */
+    public void finish() {
+        if (startTagOpen) {
+            xml.rightAngleBracket();
+            startTagOpen = false;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.ifmo.neerc.chat;
+
+import static ru.ifmo.neerc.chat.ChatSyntaxTest.COMMAND_PATTERN;
+import static ru.ifmo.neerc.chat.ChatSyntaxTest.MESSAGE_PATTERN;
+import static ru.ifmo.neerc.chat.ChatSyntaxTest.TASK_PATTERN;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures replaying a day of chat history with {@link ChatSyntax} and with
+ * the regular expressions it replaced, which {@link ChatSyntaxTest} checks it against.
+ *
+ * Usage: gradle :Chat:jmh -Pjmh.args="ChatSyntax [JMH options]"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class ChatSyntaxBenchmark {
+    @Param({"20000"})
+    public int messages;
+
+    private List<String> day;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(2016);
+        day = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            day.add(randomMessage(random));
+        }
+    }
+
+    private static String randomMessage(Random random) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return "hall" + random.nextInt(10) + "> please check the printer";
+            case 1:
+                return "!! problem " + (char) ('A' + random.nextInt(12)) + " statement is wrong";
+            case 2:
+                return "@todo hall" + random.nextInt(10) + " bring balloons to team " + random.nextInt(300);
+            default:
+                return "team " + random.nextInt(300) + " asks for a clarification on problem "
+                        + (char) ('A' + random.nextInt(12));
+        }
+    }
+
+    @Benchmark
+    public int replayRegex() {
+        int count = 0;
+        for (String text : day) {
+            // the message pattern was precompiled, the command patterns were compiled on every send
+            Matcher matcher = MESSAGE_PATTERN.matcher(text);
+            if (matcher.matches() && matcher.group(1) != null) {
+                count++;
+            }
+            if (Pattern.compile(TASK_PATTERN.pattern(), Pattern.MULTILINE).matcher(text).find()) {
+                count++;
+            }
+            if (Pattern.compile(COMMAND_PATTERN.pattern(), Pattern.DOTALL).matcher(text).matches()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int replaySyntax() {
+        int count = 0;
+        for (String text : day) {
+            if (ChatSyntax.getAddresseeLength(text) > 0) {
+                count++;
+            }
+            if (ChatSyntax.findTaskCommand(text, 0) != null) {
+                count++;
+            }
+            if (ChatSyntax.isCommand(text)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,128 @@
+package ru.ifmo.neerc.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link ChatSyntax} against the regular expressions it replaced.
+ */
+public class ChatSyntaxTest {
+    static final Pattern TASK_PATTERN = Pattern.compile(
+            "^@(todo|todofail|task|confirm|ok|okfail|reason|question|q)( [\\w,]+)?( (start|end)([+-]\\d+)?(!)?)? (.*)$",
+            Pattern.MULTILINE);
+    static final Pattern COMMAND_PATTERN = Pattern.compile("^(@|/)\\w+ .*", Pattern.DOTALL);
+    static final Pattern MESSAGE_PATTERN =
+            Pattern.compile("^(?:([a-zA-Z0-9%]+)>)? *(#+|\\?+|!+)?(.*)$", Pattern.DOTALL);
+    private static final Pattern SUBSCRIBE_PATTERN = Pattern.compile("^/s\\s+(%\\w+)\\s*$", Pattern.DOTALL);
+    private static final Pattern UNSUBSCRIBE_PATTERN = Pattern.compile("^/d\\s+(%\\w+)\\s*$", Pattern.DOTALL);
+
+    private static final String[] TOKENS = {
+        "@", "/", "s", "d", "todo", "todofail", "task", "ok", "okfail", "q", "question", "reason", "confirm",
+        "start", "end", "+", "-", "5", "10", "!", "?", "#", ">", "%", "%ch", "a,b", "hall1", "_", ",",
+        " ", " ", " ", "  ", "\t", "\n", "\r", "\r\n", "\u0085", "\u2028", "\u2029", "x", "\u0416"
+    };
+
+    @Test
+    public void randomInputs() {
+        Random random = new Random(2016);
+        for (int i = 0; i < 200000; i++) {
+            check(randomText(random));
+        }
+    }
+
+    @Test
+    public void channelCommands() {
+        String[] texts = {
+            "/s %ch", "/d %ch", "/s  %ch  ", "/d\t%ch\n", "/d %ch\r\n", "/d %ch\n\n", "/d %ch_1 ",
+            "/d%ch", "/d %", "/d %ch x", "/d ch", "/d %ch,%b", " /d %ch", "/dd %ch", "/D %ch", "/d %\u0416", "/d"
+        };
+        for (String text : texts) {
+            check(text);
+        }
+        assertEquals("%ch", ChatSyntax.parseChannelCommand("/d %ch", 'd'));
+        assertEquals("%ch_1", ChatSyntax.parseChannelCommand("/d  %ch_1 \n", 'd'));
+        assertNull(ChatSyntax.parseChannelCommand("/d %ch", 's'));
+        assertNull(ChatSyntax.parseChannelCommand("/s %ch", 'd'));
+        assertNull(ChatSyntax.parseChannelCommand("/d%ch", 'd'));
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            builder.append(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return builder.toString();
+    }
+
+    private static void check(String text) {
+        Matcher matcher = TASK_PATTERN.matcher(text);
+        ChatSyntax.TaskCommand command = ChatSyntax.findTaskCommand(text, 0);
+        while (matcher.find()) {
+            expect(text, command != null, "task command");
+            expect(text, matcher.group(1).equals(command.getKeyword()), "keyword");
+            expect(text, (matcher.group(2) == null ? "" : matcher.group(2).substring(1)).equals(command.getTo()), "to");
+            expect(text, matcher.group(7).equals(command.getTitle()), "title");
+            expect(text, (matcher.group(3) != null) == command.isScheduled(), "schedule");
+            if (command.isScheduled()) {
+                expect(text, command.getScheduleType().name().endsWith(matcher.group(4).toUpperCase()), "schedule type");
+                long time = matcher.group(5) == null ? 0 : Integer.parseInt(matcher.group(5)) * 60000;
+                expect(text, time == command.getScheduleTime(), "schedule time");
+                expect(text, (matcher.group(6) == null) == command.getNeedsConfirmation(), "confirmation");
+            }
+            command = ChatSyntax.findTaskCommand(text, command.getEnd());
+        }
+        expect(text, command == null, "no more task commands");
+
+        checkChannelCommand(text, SUBSCRIBE_PATTERN, 's');
+        checkChannelCommand(text, UNSUBSCRIBE_PATTERN, 'd');
+
+        expect(text, COMMAND_PATTERN.matcher(text).matches() == ChatSyntax.isCommand(text), "command");
+
+        matcher = MESSAGE_PATTERN.matcher(text);
+        matcher.matches();
+        ChatMessage message = new ChatMessage(text, null, null, new Date());
+        expect(text, matcher.group(3).equals(message.getText()), "message text");
+        expect(text, matcher.group(1) == null ? message.getTo() == null : matcher.group(1).equals(message.getTo()),
+                "message addressee");
+        ChatMessage.Type type = ChatMessage.Type.normal;
+        if (matcher.group(1) != null && matcher.group(1).startsWith("%")) {
+            type = ChatMessage.Type.channel;
+        } else if (matcher.group(2) != null) {
+            type = matcher.group(2).startsWith("#") ? ChatMessage.Type.info
+                    : matcher.group(2).startsWith("?") ? ChatMessage.Type.question : ChatMessage.Type.urgent;
+            expect(text, matcher.group(2).length() == message.getPriority(), "message priority");
+        }
+        expect(text, type == message.getType(), "message type");
+    }
+
+    private static void checkChannelCommand(String text, Pattern pattern, char command) {
+        Matcher matcher = pattern.matcher(text);
+        String channel = ChatSyntax.parseChannelCommand(text, command);
+        expect(text, matcher.find() ? matcher.group(1).equals(channel) : channel == null, "/" + command + " channel");
+    }
+
+    private static void expect(String text, boolean condition, String what) {
+        assertTrue("Mismatch in " + what + " for " + escape(text), condition);
+    }
+
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c < ' ' || c > '~') {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
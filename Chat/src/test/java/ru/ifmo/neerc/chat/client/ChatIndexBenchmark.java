@@ -0,0 +1,125 @@
+package ru.ifmo.neerc.chat.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import ru.ifmo.neerc.chat.ChatMessage;
+import ru.ifmo.neerc.chat.user.UserEntry;
+
+/**
+ * Checks {@link ChatIndex} against a linear scan on a large history,
+ * then compares query latency of both and measures the cost of keeping
+ * the index in step with appends and evictions.
+ *
+ * Usage: ChatIndexBenchmark [messages] [runs]
+ */
+public class ChatIndexBenchmark {
+    private static final String[] WORDS = {
+        "team", "problem", "clarification", "balloon", "printer", "statement", "judge", "submit",
+        "please", "check", "wrong", "answer", "time", "limit", "compile", "error", "hall", "network",
+        "задача", "команда"
+    };
+    private static final String[] QUERIES = {
+        "balloon", "prin", "team4 limit", "clar prob", "hall3 network", "nothing", "зад"
+    };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(2016);
+        List<Message> history = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            history.add(randomMessage(random, i));
+        }
+
+        long start = System.nanoTime();
+        ChatIndex index = new ChatIndex();
+        for (Message message : history) {
+            index.add(message);
+        }
+        System.out.printf("indexed %d messages in %d ms%n", count, (System.nanoTime() - start) / 1000000);
+
+        for (String query : QUERIES) {
+            int expected = scan(history, query).size();
+            int actual = index.search(query).size();
+            if (expected != actual) {
+                throw new AssertionError(query + ": " + actual + " hits instead of " + expected);
+            }
+            System.out.printf("%-16s %6d hits%n", '"' + query + '"', actual);
+        }
+
+        for (int run = 0; run < runs; run++) {
+            long scanTime = 0;
+            long indexTime = 0;
+            int hits = 0;
+            for (String query : QUERIES) {
+                long time = System.nanoTime();
+                hits += scan(history, query).size();
+                scanTime += System.nanoTime() - time;
+
+                time = System.nanoTime();
+                hits -= index.search(query).size();
+                indexTime += System.nanoTime() - time;
+            }
+            System.out.printf("per query: scan %7.2f ms, index %7.3f ms%s%n",
+                    scanTime / 1e6 / QUERIES.length, indexTime / 1e6 / QUERIES.length, hits == 0 ? "" : " MISMATCH");
+        }
+
+        // steady state of a full chat: every append evicts the oldest message
+        Deque<Message> window = new ArrayDeque<>(history);
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Message message = randomMessage(random, count + i);
+            index.remove(window.removeFirst());
+            index.add(message);
+            window.addLast(message);
+        }
+        System.out.printf("append with eviction: %.2f us per message, %d messages indexed%n",
+                (System.nanoTime() - start) / 1e3 / count, index.size());
+    }
+
+    private static Message randomMessage(Random random, int i) {
+        StringBuilder text = new StringBuilder();
+        for (int j = 3 + random.nextInt(10); j > 0; j--) {
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+            if (random.nextInt(4) == 0) {
+                text.append(random.nextInt(100));
+            }
+            text.append(random.nextInt(8) == 0 ? ", " : " ");
+        }
+        String name = "hall" + random.nextInt(10);
+        UserEntry user = new UserEntry(name, 0, name, false);
+        return new UserMessage(new ChatMessage(text.toString(), user, null, new Date(i * 1000L)));
+    }
+
+    /**
+     * What a search without the index would do: a case insensitive
+     * word prefix match of every query word against every message.
+     */
+    private static List<Message> scan(List<Message> history, String query) {
+        List<Pattern> patterns = new ArrayList<>();
+        for (String word : query.toLowerCase(Locale.ROOT).split(" ")) {
+            patterns.add(Pattern.compile("(?<![\\p{L}\\p{Nd}])" + Pattern.quote(word),
+                    Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+        }
+        List<Message> result = new ArrayList<>();
+        for (Message message : history) {
+            String text = message.getUser().getName() + " " + message.getText();
+            boolean found = true;
+            for (Pattern pattern : patterns) {
+                found &= pattern.matcher(text).find();
+            }
+            if (found) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+}
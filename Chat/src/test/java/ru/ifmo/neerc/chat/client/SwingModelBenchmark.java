@@ -0,0 +1,290 @@
+package ru.ifmo.neerc.chat.client;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Date;
+import java.util.Random;
+
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+
+import ru.ifmo.neerc.chat.ChatMessage;
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.chat.user.UserRegistry;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskActions;
+import ru.ifmo.neerc.task.TaskRegistry;
+
+/**
+ * Drives the chat table, the user list and the task table, with their
+ * renderers, by scripted event streams, without a display.
+ *
+ * Events are delivered from the main thread, as the XMPP listeners do,
+ * and the work left for the event dispatch thread is timed by a pushed event
+ * queue. For each round of a scenario the time and allocated bytes per event
+ * are reported on both threads, with the longest single dispatch, and then
+ * the cost of painting the component once. The first rounds are warm-up.
+ *
+ * Usage: SwingModelBenchmark [rounds]
+ */
+public class SwingModelBenchmark {
+    private static final int USERS = 300;
+    private static final int HISTORY = 5000;
+    private static final int LIVE_MESSAGES = 1000;
+    private static final int TASKS = 50;
+    private static final int TASK_UPDATES = 1000;
+    private static final String[] STATUSES = {
+        TaskActions.STATUS_NEW, TaskActions.STATUS_RUNNING, TaskActions.STATUS_SUCCESS, TaskActions.STATUS_FAIL
+    };
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static TimingQueue queue;
+
+    private static final Random random = new Random(2016);
+    private static long time = System.currentTimeMillis() - 24 * 3600 * 1000L;
+    private static long liveTime;
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        queue = new TimingQueue();
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(queue);
+        // components are painted straight into an image, there is no window to buffer for
+        RepaintManager.currentManager(null).setDoubleBufferingEnabled(false);
+
+        UserRegistry users = UserRegistry.getInstance();
+        UserEntry admin = users.findOrRegister("admin@localhost");
+        users.setPower("admin@localhost", true);
+        for (int i = 1; i <= USERS; i++) {
+            users.findOrRegister(hall(i));
+        }
+        NameColorizer colorizer = new NameColorizer();
+
+        UsersPanel usersPanel = new UsersPanel(admin, colorizer);
+        for (int round = 0; round < rounds; round++) {
+            Meter meter = new Meter("presence storm");
+            for (int i = 1; i <= USERS; i++) {
+                meter.start();
+                users.putOnline(hall(i));
+                meter.stop();
+            }
+            for (int i = USERS; i >= 1; i--) {
+                meter.start();
+                users.putOffline(hall(i));
+                meter.stop();
+            }
+            meter.finish(usersPanel, 200, 800);
+        }
+
+        ChatArea history = new ChatArea(admin, colorizer, null);
+        JViewport historyView = viewport(history);
+        for (int round = 0; round < rounds; round++) {
+            Meter meter = new Meter("history replay");
+            for (int i = 0; i < HISTORY; i++) {
+                Message message = randomMessage(users, new Date(time++));
+                meter.start();
+                history.addToModel(message);
+                meter.stop();
+            }
+            meter.finish(historyView, 800, 600);
+        }
+
+        ChatArea live = new ChatArea(admin, colorizer, null);
+        JViewport liveView = viewport(live);
+        for (int round = 0; round < rounds; round++) {
+            Meter meter = new Meter("live messages");
+            for (int i = 0; i < LIVE_MESSAGES; i++) {
+                // recent messages are laid out and scrolled to one by one
+                liveTime = Math.max(liveTime + 1, System.currentTimeMillis());
+                Message message = randomMessage(users, new Date(liveTime));
+                meter.start();
+                live.addMessage(message);
+                meter.stop();
+            }
+            meter.finish(liveView, 800, 600);
+        }
+
+        TaskRegistry tasks = TaskRegistry.getInstance();
+        JViewport taskView = viewport(new AdminTaskList(tasks, admin.getName()));
+        for (int i = 0; i < TASKS; i++) {
+            tasks.update(randomTask(i));
+        }
+        for (int round = 0; round < rounds; round++) {
+            Meter meter = new Meter("task updates");
+            for (int i = 0; i < TASK_UPDATES; i++) {
+                // a parsed copy of the task with one status changed, as it comes from the server
+                Task task = randomTask(random.nextInt(TASKS));
+                meter.start();
+                tasks.update(task);
+                meter.stop();
+            }
+            meter.finish(taskView, 1280, 800);
+        }
+        System.exit(0);
+    }
+
+    private static String hall(int i) {
+        return "hall" + i + "@localhost";
+    }
+
+    private static Message randomMessage(UserRegistry users, Date date) {
+        UserEntry user = users.findByName("hall" + (1 + random.nextInt(USERS)));
+        StringBuilder text = new StringBuilder();
+        for (int j = 3 + random.nextInt(30); j > 0; j--) {
+            text.append("word").append(random.nextInt(1000)).append(' ');
+        }
+        String to = random.nextInt(5) == 0 ? "hall" + (1 + random.nextInt(USERS)) : null;
+        return new UserMessage(new ChatMessage(text.toString(), user, to, date));
+    }
+
+    private static Task randomTask(int i) {
+        Task task = new Task("t" + i, TaskActions.TYPE_TODO, "Task " + i + " for every hall, please check and report");
+        Random statuses = new Random(i);
+        for (int j = 1; j <= USERS; j++) {
+            task.setStatus("hall" + j, STATUSES[statuses.nextInt(2)], "");
+        }
+        task.setStatus("hall" + (1 + random.nextInt(USERS)), STATUSES[random.nextInt(STATUSES.length)], "done");
+        return task;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void runOnEdt(Runnable runnable) throws InterruptedException {
+        try {
+            SwingUtilities.invokeAndWait(runnable);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static JViewport viewport(JComponent view) {
+        JViewport viewport = new JViewport();
+        viewport.setView(view);
+        return viewport;
+    }
+
+    private static void layout(Component component) {
+        if (component instanceof Container) {
+            component.doLayout();
+            for (Component child : ((Container) component).getComponents()) {
+                layout(child);
+            }
+        }
+    }
+
+    /**
+     * Collects one round of a scenario.
+     */
+    private static class Meter {
+        private final String name;
+        private int events;
+        private long callerNanos;
+        private long callerBytes;
+        private long startNanos;
+        private long startBytes;
+
+        Meter(String name) throws InterruptedException {
+            this.name = name;
+            queue.take();
+        }
+
+        void start() {
+            startBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        void stop() {
+            callerNanos += System.nanoTime() - startNanos;
+            callerBytes += allocatedBytes() - startBytes;
+            events++;
+        }
+
+        void finish(final JComponent view, final int width, final int height) throws InterruptedException {
+            // runs after everything posted by the events
+            long[] edt = queue.take();
+            runOnEdt(new Runnable() {
+                public void run() {
+                    paint(view, width, height);
+                }
+            });
+            long[] paint = queue.take();
+
+            System.out.printf("%-15s %5d events: caller %7.1f us %7.1f KB, EDT %7.1f us %7.1f KB, max %6.2f ms;"
+                            + " paint %6.2f ms %7.1f KB%n",
+                    name, events, callerNanos / 1e3 / events, callerBytes / 1024.0 / events,
+                    edt[0] / 1e3 / events, edt[1] / 1024.0 / events, edt[2] / 1e6,
+                    paint[0] / 1e6, paint[1] / 1024.0);
+        }
+
+        private static void paint(JComponent view, int width, int height) {
+            view.setSize(width, height);
+            if (view instanceof JViewport) {
+                // tables are painted as in a scroll pane, showing the latest rows
+                Component table = ((JViewport) view).getView();
+                table.setSize(Math.max(width, table.getPreferredSize().width), table.getPreferredSize().height);
+                ((JViewport) view).setViewPosition(new Point(0, Math.max(0, table.getHeight() - height)));
+            }
+            layout(view);
+
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setClip(0, 0, width, height);
+            view.paint(graphics);
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * Event queue measuring the time and allocations of every dispatched event.
+     */
+    private static class TimingQueue extends EventQueue {
+        private long nanos;
+        private long bytes;
+        private long maxNanos;
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            long startBytes = allocatedBytes();
+            long start = System.nanoTime();
+            super.dispatchEvent(event);
+            long time = System.nanoTime() - start;
+            nanos += time;
+            maxNanos = Math.max(maxNanos, time);
+            bytes += allocatedBytes() - startBytes;
+        }
+
+        /**
+         * Returns time, allocated bytes and the longest time of the events
+         * dispatched so far, and starts counting again.
+         */
+        long[] take() throws InterruptedException {
+            final long[] counters = new long[3];
+            runOnEdt(new Runnable() {
+                public void run() {
+                    counters[0] = nanos;
+                    counters[1] = bytes;
+                    counters[2] = maxNanos;
+                    nanos = 0;
+                    bytes = 0;
+                    maxNanos = 0;
+                }
+            });
+            return counters;
+        }
+    }
+}
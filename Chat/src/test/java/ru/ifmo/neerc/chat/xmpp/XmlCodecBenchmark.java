@@ -0,0 +1,75 @@
+package ru.ifmo.neerc.chat.xmpp;
+
+import static ru.ifmo.neerc.chat.xmpp.XmlCodecTest.parseElement;
+import static ru.ifmo.neerc.chat.xmpp.XmlCodecTest.parseText;
+import static ru.ifmo.neerc.chat.xmpp.XmlCodecTest.randomTasks;
+import static ru.ifmo.neerc.chat.xmpp.XmlCodecTest.writeElement;
+import static ru.ifmo.neerc.chat.xmpp.XmlCodecTest.writeText;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.DocumentHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.utils.XmlCodec;
+
+/**
+ * Compares {@link XmlCodec} with the dom4j path it replaced, on the tasks
+ * of {@link XmlCodecTest}. The codec was written to allocate less, so run
+ * it with the GC profiler to see allocations per operation.
+ *
+ * Usage: gradle :Chat:jmh -Pjmh.args="XmlCodec -prof gc [JMH options]"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class XmlCodecBenchmark {
+    @Param({"500"})
+    public int tasks;
+
+    private List<Task> list;
+    private String xml;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        list = randomTasks(new Random(2016), tasks);
+        xml = writeText(list);
+    }
+
+    @Benchmark
+    public String writeDom4j() {
+        return writeElement(list).asXML();
+    }
+
+    @Benchmark
+    public String writeCodec() throws Exception {
+        return writeText(list);
+    }
+
+    @Benchmark
+    public List<Task> readDom4j() throws Exception {
+        return parseElement(DocumentHelper.parseText(xml).getRootElement());
+    }
+
+    @Benchmark
+    public List<Task> readCodec() throws Exception {
+        return parseText(xml);
+    }
+}
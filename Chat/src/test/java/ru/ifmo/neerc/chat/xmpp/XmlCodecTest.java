@@ -0,0 +1,160 @@
+package ru.ifmo.neerc.chat.xmpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.jivesoftware.smack.util.PacketParserUtils;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+
+import ru.ifmo.neerc.chat.xmpp.packet.NeercTaskListIQ;
+import ru.ifmo.neerc.chat.xmpp.provider.PullParserSource;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskStatus;
+import ru.ifmo.neerc.utils.XmlCodec;
+import ru.ifmo.neerc.utils.XmlUtils;
+
+/**
+ * Checks that tasks survive a round trip through every {@link XmlCodec} adapter:
+ * text read by a pull parser, dom4j elements and Smack packets.
+ */
+public class XmlCodecTest {
+    private static final String[] STATUSES = {"none", "running", "success", "fail"};
+    private static final String[] SPECIAL = {
+        "\"quoted\"", "'apostrophes'", "<b>", "a > b", "a & b", "&amp;", "&#10;", "]]>",
+        " padded ", "two  spaces", "tab\there", "two\nlines", "\r\n", "", "Жури"
+    };
+
+    @Test
+    public void randomTasks() throws Exception {
+        checkRoundTrips(randomTasks(new Random(2016), 500));
+    }
+
+    @Test
+    public void specialCharacters() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < SPECIAL.length; i++) {
+            Task task = new Task("special" + i, SPECIAL[i], SPECIAL[i], new Date(i));
+            task.setStatus("hall" + i, SPECIAL[i], SPECIAL[i]);
+            task.setStatus("hall" + SPECIAL.length, STATUSES[i % STATUSES.length], SPECIAL[i]);
+            tasks.add(task);
+        }
+        checkRoundTrips(tasks);
+    }
+
+    @Test
+    public void nulls() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        Task task = new Task("null", null, null, new Date(0));
+        task.setStatus("hall1", null, null);
+        task.setStatus("hall2", STATUSES[1], null);
+        tasks.add(task);
+        checkRoundTrips(tasks);
+    }
+
+    private static void checkRoundTrips(List<Task> tasks) throws Exception {
+        check(tasks, parseText(writeText(tasks)), "text");
+        check(tasks, parseElement(writeElement(tasks)), "dom4j");
+        check(tasks, parseElement(DocumentHelper.parseText(writeText(tasks)).getRootElement()), "text to dom4j");
+        check(tasks, parseIQ(tasks), "smack");
+    }
+
+    static List<Task> randomTasks(Random random, int count) {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Task task = new Task("id" + i, random.nextBoolean() ? "todo" : "confirm",
+                    "Task <" + i + "> & \"quotes\"", new Date(random.nextInt(Integer.MAX_VALUE)));
+            for (int j = random.nextInt(20); j > 0; j--) {
+                task.setStatus("hall" + j, STATUSES[random.nextInt(STATUSES.length)],
+                        random.nextBoolean() ? null : "reason " + j);
+            }
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    static String writeText(List<Task> tasks) throws Exception {
+        StringBuilder builder = new StringBuilder();
+        XmlCodec.TextSink sink = new XmlCodec.TextSink(builder);
+        sink.startElement("query");
+        for (Task task : tasks) {
+            XmlCodec.writeTask(sink, task);
+        }
+        sink.endElement("query");
+        sink.flush();
+        return builder.toString();
+    }
+
+    static List<Task> parseText(String xml) throws Exception {
+        XmlPullParser parser = PacketParserUtils.newXmppParser(new StringReader(xml));
+        while (parser.getEventType() != XmlPullParser.START_TAG) {
+            parser.next();
+        }
+        List<Task> tasks = new ArrayList<>();
+        XmlCodec.Source source = new PullParserSource(parser);
+        for (XmlCodec.Source child = source.nextChild(); child != null; child = source.nextChild()) {
+            tasks.add(XmlCodec.readTask(child));
+        }
+        return tasks;
+    }
+
+    static Element writeElement(List<Task> tasks) {
+        Element root = DocumentHelper.createElement("query");
+        for (Task task : tasks) {
+            XmlUtils.taskToXml(root, task);
+        }
+        return root;
+    }
+
+    static List<Task> parseElement(Element root) {
+        List<Task> tasks = new ArrayList<>();
+        for (Iterator<?> it = root.elementIterator(); it.hasNext(); ) {
+            tasks.add(XmlUtils.taskFromXml((Element) it.next()));
+        }
+        return tasks;
+    }
+
+    private static List<Task> parseIQ(List<Task> tasks) throws Exception {
+        NeercTaskListIQ iq = new NeercTaskListIQ();
+        for (Task task : tasks) {
+            iq.addTask(task);
+        }
+        XmlPullParser parser = PacketParserUtils.newXmppParser(new StringReader(iq.getChildElementXML().toString()));
+        while (parser.getEventType() != XmlPullParser.START_TAG) {
+            parser.next();
+        }
+        NeercTaskListIQ parsed = new NeercTaskListIQ();
+        parsed.parse(parser);
+        return new ArrayList<>(parsed.getTasks());
+    }
+
+    private static void check(List<Task> expected, List<Task> actual, String path) {
+        assertEquals(path + ": tasks", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Task a = expected.get(i);
+            Task b = actual.get(i);
+            String where = path + ": task " + a.getId() + " ";
+            assertEquals(where + "id", a.getId(), b.getId());
+            assertEquals(where + "type", a.getType(), b.getType());
+            assertEquals(where + "title", a.getTitle(), b.getTitle());
+            assertEquals(where + "date", a.getDate(), b.getDate());
+            assertEquals(where + "statuses", a.getStatuses().size(), b.getStatuses().size());
+            for (Map.Entry<String, TaskStatus> entry : a.getStatuses().entrySet()) {
+                TaskStatus status = b.getStatus(entry.getKey());
+                assertNotNull(where + "status of " + entry.getKey(), status);
+                assertEquals(where + "status type of " + entry.getKey(), entry.getValue().getType(), status.getType());
+                assertEquals(where + "status value of " + entry.getKey(), entry.getValue().getValue(), status.getValue());
+            }
+        }
+    }
+}
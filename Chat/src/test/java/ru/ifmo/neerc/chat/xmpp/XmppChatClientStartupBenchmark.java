@@ -0,0 +1,101 @@
+package ru.ifmo.neerc.chat.xmpp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Starts the deployed client several times through {@link Client}
+ * and compares the time to the first shown window with and without
+ * the class data sharing archive.
+ *
+ * Usage: XmppChatClientStartupBenchmark [deploy dir] [runs]
+ */
+public class XmppChatClientStartupBenchmark {
+    private static final String PREFIX = "Startup time: ";
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File(args.length > 0 ? args[0] : "deploy");
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        report("default", measure(dir, runs, null));
+        if (new File(dir, "chat-client.jsa").exists()) {
+            report("archive", measure(dir, runs, "-XX:SharedArchiveFile=chat-client.jsa"));
+        } else {
+            System.out.println("No chat-client.jsa in " + dir + ", skipping archive runs");
+        }
+    }
+
+    private static long[] measure(File dir, int runs, String option)
+            throws IOException, InterruptedException, URISyntaxException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        // the archive only matches while the deployed jar comes first on the class path
+        String classPath = "chat-client.jar" + File.pathSeparator
+                + new File(Client.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        File cache = File.createTempFile("startup", ".cache");
+        cache.deleteOnExit();
+
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            if (option != null) {
+                command.add(option);
+            }
+            command.add("-Dcache.file=" + cache.getPath());
+            command.add("-Dusername=benchmark");
+            command.add("-cp");
+            command.add(classPath);
+            command.add(Client.class.getName());
+
+            Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(PREFIX)) {
+                        times[i] = Long.parseLong(line.substring(PREFIX.length(), line.indexOf(' ', PREFIX.length())));
+                    }
+                }
+            }
+            process.waitFor();
+        }
+        return times;
+    }
+
+    private static void report(String name, long[] times) {
+        Arrays.sort(times);
+        System.out.printf("%-8s min %5d ms, median %5d ms, max %5d ms%n",
+                name, times[0], times[times.length / 2], times[times.length - 1]);
+    }
+
+    /**
+     * Starts the client, prints the time from JVM start to the first shown window and exits.
+     */
+    public static class Client {
+        public static void main(String[] args) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    new XmppChatClient().setVisible(true);
+
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            long startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+                            System.out.println(PREFIX + (System.currentTimeMillis() - startTime) + " ms");
+                            System.exit(0);
+                        }
+                    });
+                }
+            });
+        }
+    }
+}
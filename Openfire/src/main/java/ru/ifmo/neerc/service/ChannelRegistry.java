@@ -0,0 +1,63 @@
+package ru.ifmo.neerc.service;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Channels known in a room and their subscribers.
+ *
+ * Subscribers are kept by bare JID, so subscriptions outlive
+ * the occupant sessions and survive reconnects.
+ * The component keeps a registry for each room.
+ */
+public class ChannelRegistry {
+    private final Map<String, Set<String>> subscribers = new TreeMap<String, Set<String>>();
+
+    /**
+     * Makes the channel known.
+     *
+     * @return true if the channel was not known before
+     */
+    public synchronized boolean addChannel(String channel) {
+        if (subscribers.containsKey(channel)) {
+            return false;
+        }
+        subscribers.put(channel, new LinkedHashSet<String>());
+        return true;
+    }
+
+    public synchronized void subscribe(String channel, String jid) {
+        addChannel(channel);
+        subscribers.get(channel).add(jid);
+    }
+
+    public synchronized void unsubscribe(String channel, String jid) {
+        Set<String> jids = subscribers.get(channel);
+        if (jids != null) {
+            jids.remove(jid);
+        }
+    }
+
+    public synchronized boolean isSubscribed(String channel, String jid) {
+        Set<String> jids = subscribers.get(channel);
+        return jids != null && jids.contains(jid);
+    }
+
+    /**
+     * Returns bare JIDs of the channel subscribers.
+     */
+    public synchronized Set<String> getSubscribers(String channel) {
+        Set<String> jids = subscribers.get(channel);
+        if (jids == null) {
+            return Collections.emptySet();
+        }
+        return new LinkedHashSet<String>(jids);
+    }
+
+    public synchronized Set<String> getChannels() {
+        return new LinkedHashSet<String>(subscribers.keySet());
+    }
+}
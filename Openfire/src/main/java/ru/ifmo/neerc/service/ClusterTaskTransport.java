@@ -0,0 +1,147 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import org.jivesoftware.openfire.cluster.ClusterEventListener;
+import org.jivesoftware.openfire.cluster.ClusterManager;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.jivesoftware.util.cache.ClusterTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replicates over an Openfire cluster, with the senior member as the leader.
+ *
+ * Updates travel as cluster tasks. Updates for the leader go to all other
+ * members, and only the senior one takes them, so that the leader need not
+ * be looked up. When clustering is off, the node leads itself.
+ */
+public class ClusterTaskTransport implements ReplicationTransport, ClusterEventListener {
+
+	private static final Logger Log = LoggerFactory.getLogger(ClusterTaskTransport.class);
+
+    /*
+     * Cluster tasks are created by the cluster, and find the transport of the node here.
+     */
+    private static volatile ClusterTaskTransport instance;
+
+    private volatile Receiver receiver;
+
+    public void start(Receiver receiver) {
+        this.receiver = receiver;
+        instance = this;
+        ClusterManager.addListener(this);
+    }
+
+    public void stop() {
+        ClusterManager.removeListener(this);
+        instance = null;
+    }
+
+    public boolean isLeader() {
+        return !ClusterManager.isClusteringStarted() || ClusterManager.isSeniorClusterMember();
+    }
+
+    public void sendToLeader(RoomUpdate update) {
+        if (isLeader()) {
+            receiver.sequence(update);
+        } else {
+            CacheFactory.doClusterTask(new UpdateTask(update, true));
+        }
+    }
+
+    public void broadcast(RoomUpdate update) {
+        if (ClusterManager.isClusteringStarted()) {
+            CacheFactory.doClusterTask(new UpdateTask(update, false));
+        }
+        receiver.deliver(update);
+    }
+
+    private void receive(RoomUpdate update, boolean toLeader) {
+        if (!toLeader) {
+            receiver.deliver(update);
+        } else if (isLeader()) {
+            receiver.sequence(update);
+        }
+    }
+
+    // ClusterEventListener Interface
+
+    public void joinedCluster() {
+        receiver.leaderChanged(isLeader());
+    }
+
+    public void joinedCluster(byte[] nodeID) {
+    }
+
+    public void leftCluster() {
+        receiver.leaderChanged(true);
+    }
+
+    public void leftCluster(byte[] nodeID) {
+        receiver.leaderChanged(isLeader());
+    }
+
+    public void markedAsSeniorClusterMember() {
+        receiver.leaderChanged(true);
+    }
+
+    /**
+     * An update sent to other members of the cluster.
+     */
+    public static class UpdateTask implements ClusterTask<Void> {
+        private RoomUpdate update;
+        private boolean toLeader;
+
+        /**
+         * Creates an empty task to be read from the cluster.
+         */
+        public UpdateTask() {
+        }
+
+        UpdateTask(RoomUpdate update, boolean toLeader) {
+            this.update = update;
+            this.toLeader = toLeader;
+        }
+
+        public Void getResult() {
+            return null;
+        }
+
+        public void run() {
+            ClusterTaskTransport transport = instance;
+            if (transport == null) {
+                Log.debug("Not running, dropped " + update);
+                return;
+            }
+            transport.receive(update, toLeader);
+        }
+
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeBoolean(toLeader);
+            update.writeTo(out);
+        }
+
+        public void readExternal(ObjectInput in) throws IOException {
+            toLeader = in.readBoolean();
+            update = RoomUpdate.readFrom(in);
+        }
+    }
+}
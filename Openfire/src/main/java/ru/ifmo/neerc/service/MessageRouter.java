@@ -0,0 +1,161 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.jivesoftware.openfire.interceptor.PacketInterceptor;
+import org.jivesoftware.openfire.interceptor.PacketRejectedException;
+import org.jivesoftware.openfire.muc.MUCRole;
+import org.jivesoftware.openfire.muc.MUCRoom;
+import org.jivesoftware.openfire.muc.MultiUserChatService;
+import org.jivesoftware.openfire.session.Session;
+import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Message;
+import org.xmpp.packet.Packet;
+
+import ru.ifmo.neerc.chat.ChatMessage;
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.chat.user.UserRegistry;
+
+/**
+ * Delivers addressed room messages, like {@code hall5> text}, only to the
+ * addressed users or groups, power users and the sender, instead of letting
+ * the room broadcast them to every occupant. Channel messages, like
+ * {@code %bot> text}, are delivered only to the channel subscribers and the
+ * sender, except the first message of a new channel, which announces
+ * the channel to the whole room.
+ *
+ * Routed messages are not added to the room history, so they are not
+ * replayed to anyone joining later.
+ */
+public class MessageRouter implements PacketInterceptor {
+
+	private static final Logger Log = LoggerFactory.getLogger(MessageRouter.class);
+
+    private final NEERCComponent component;
+    private final MultiUserChatService mucService;
+
+    public MessageRouter(NEERCComponent component, MultiUserChatService mucService) {
+        this.component = component;
+        this.mucService = mucService;
+    }
+
+    public void interceptPacket(Packet packet, Session session, boolean incoming, boolean processed)
+            throws PacketRejectedException {
+        if (!incoming || processed || !(packet instanceof Message)) {
+            return;
+        }
+        Message message = (Message) packet;
+        JID to = message.getTo();
+        if (message.getType() != Message.Type.groupchat || message.getBody() == null
+                || to == null || to.getResource() != null || !mucService.getServiceDomain().equals(to.getDomain())) {
+            return;
+        }
+
+        ChatMessage chatMessage = new ChatMessage(message.getBody());
+        if (chatMessage.getTo() == null) {
+            return;
+        }
+
+        MUCRoom room = mucService.getChatRoom(to.getNode());
+        if (room == null || message.getFrom() == null) {
+            return;
+        }
+        MUCRole sender;
+        try {
+            List<MUCRole> roles = room.getOccupantsByBareJID(message.getFrom().asBareJID());
+            sender = roles.get(0);
+        } catch (UserNotFoundException e) {
+            // not an occupant, leave the error to the room
+            return;
+        }
+        if (sender.getRole() == MUCRole.Role.visitor || sender.getRole() == MUCRole.Role.none) {
+            return;
+        }
+
+        Message routed = message.createCopy();
+        routed.setFrom(sender.getRoleAddress());
+        int count = 0;
+        if (chatMessage.getType() == ChatMessage.Type.channel) {
+            if (component.addChannel(room.getName(), chatMessage.getTo())) {
+                return;
+            }
+            ChannelRegistry channels = component.getChannelRegistry(room.getName());
+            Set<String> subscribers = channels.getSubscribers(chatMessage.getTo());
+            subscribers.add(message.getFrom().toBareJID());
+            for (String jid : subscribers) {
+                count += send(room, jid, routed);
+            }
+        } else {
+            Set<String> recipients = getRecipients(room.getName(), chatMessage.getTo());
+            recipients.add(getUsername(sender.getUserAddress()));
+            for (MUCRole occupant : room.getOccupants()) {
+                if (recipients.contains(getUsername(occupant.getUserAddress()))) {
+                    occupant.send(routed.createCopy());
+                    count++;
+                }
+            }
+        }
+        Log.debug("Routed message to " + chatMessage.getTo() + " in " + room.getName() + " to " + count + " occupants");
+
+        // the message is delivered, stop the room from broadcasting it
+        throw new PacketRejectedException();
+    }
+
+    /**
+     * Sends the message to all occupants of the user with the given bare JID.
+     */
+    private static int send(MUCRoom room, String jid, Message message) {
+        List<MUCRole> occupants;
+        try {
+            occupants = room.getOccupantsByBareJID(new JID(jid));
+        } catch (UserNotFoundException e) {
+            // not in the room now
+            return 0;
+        }
+        for (MUCRole occupant : occupants) {
+            occupant.send(message.createCopy());
+        }
+        return occupants.size();
+    }
+
+    private Set<String> getRecipients(String roomName, String addressees) {
+        UserRegistry users = component.getUserRegistry(roomName);
+        Set<String> recipients = new HashSet<String>();
+        recipients.add(addressees.toLowerCase(Locale.ROOT));
+        for (UserEntry user : users.findMatchingUsers(addressees)) {
+            recipients.add(user.getName().toLowerCase(Locale.ROOT));
+        }
+        for (UserEntry user : users.getUsers()) {
+            if (user.isPower()) {
+                recipients.add(user.getName().toLowerCase(Locale.ROOT));
+            }
+        }
+        return recipients;
+    }
+
+    private static String getUsername(JID jid) {
+        String username = jid.getNode() == null ? jid.toString() : jid.getNode();
+        return username.toLowerCase(Locale.ROOT);
+    }
+}
@@ -20,14 +20,20 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.dom4j.Element;
 import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.cluster.ClusterManager;
 import org.jivesoftware.openfire.group.Group;
 import org.jivesoftware.openfire.group.GroupJID;
 import org.jivesoftware.openfire.group.GroupManager;
 import org.jivesoftware.openfire.group.GroupNotFoundException;
+import org.jivesoftware.openfire.interceptor.InterceptorManager;
+import org.jivesoftware.openfire.muc.MUCEventDispatcher;
 import org.jivesoftware.openfire.muc.MUCRole;
 import org.jivesoftware.openfire.muc.MUCRoom;
 import org.jivesoftware.openfire.muc.MultiUserChatService;
@@ -48,13 +54,17 @@ import ru.ifmo.neerc.chat.user.UserEntry;
 import ru.ifmo.neerc.chat.user.UserRegistry;
 import ru.ifmo.neerc.clock.Clock;
 import ru.ifmo.neerc.clock.ClockListener;
+import ru.ifmo.neerc.service.query.ChannelsQueryHandler;
 import ru.ifmo.neerc.service.query.PingQueryHandler;
 import ru.ifmo.neerc.service.query.QueryHandler;
+import ru.ifmo.neerc.service.query.SnapshotQueryHandler;
 import ru.ifmo.neerc.service.query.TaskQueryHandler;
+import ru.ifmo.neerc.service.query.TaskStatsQueryHandler;
 import ru.ifmo.neerc.service.query.TaskStatusQueryHandler;
 import ru.ifmo.neerc.service.query.TasksQueryHandler;
 import ru.ifmo.neerc.service.query.UsersQueryHandler;
 import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskChanges;
 import ru.ifmo.neerc.task.TaskRegistry;
 import ru.ifmo.neerc.task.TaskRegistryListener;
 import ru.ifmo.neerc.utils.XmlUtils;
@@ -70,6 +80,15 @@ public class NEERCComponent implements Component {
     private final MultiUserChatService mucService;
 
     private HashMap<String, QueryHandler> handlers = new HashMap<String, QueryHandler>();
+    private ClockService clockService;
+    private MessageRouter messageRouter;
+    private OccupantDirectory occupants;
+    private final Replicator replicator;
+
+    private final Map<String, TaskRegistry> taskRegistries = new HashMap<String, TaskRegistry>();
+    private final Map<String, UserRegistry> userRegistries = new HashMap<String, UserRegistry>();
+    private final Map<String, ChannelRegistry> channelRegistries = new HashMap<String, ChannelRegistry>();
+    private final Map<String, TaskStats> taskStats = new HashMap<String, TaskStats>();
 
     /**
      * Namespace of the packet extension.
@@ -79,17 +98,36 @@ public class NEERCComponent implements Component {
     public static final String DEFAULT_ROOM_NAME = "neerc";
 
     public NEERCComponent() {
-        this.componentManager = ComponentManagerFactory.getComponentManager();
+        this(ComponentManagerFactory.getComponentManager(),
+                XMPPServer.getInstance().getMultiUserChatManager().getMultiUserChatServices().get(0),
+                ClusterManager.isClusteringEnabled() ? new ClusterTaskTransport() : null);
+    }
+
+    /**
+     * Creates the component over the given services, so that it can also run
+     * outside of a server.
+     */
+    public NEERCComponent(ComponentManager componentManager, MultiUserChatService mucService) {
+        this(componentManager, mucService, null);
+    }
+
+    /**
+     * Creates the component as a node of a cluster, with its state replicated over
+     * the given transport, or alone if the transport is null.
+     */
+    public NEERCComponent(ComponentManager componentManager, MultiUserChatService mucService,
+                          ReplicationTransport transport) {
+        this.componentManager = componentManager;
+        this.mucService = mucService;
         myName = NAME + "." + componentManager.getServerName();
-        XMPPServer server = XMPPServer.getInstance();
-        mucService = server.getMultiUserChatManager().getMultiUserChatServices().get(0);
+        replicator = new Replicator(this, transport);
     }
 
     private void initUsers() {
 		Log.debug("init start");
 
         for (MUCRoom room : mucService.getChatRooms()) {
-            UserRegistry users = UserRegistry.getInstanceFor(room.getName());
+            UserRegistry users = getUserRegistry(room.getName());
 
             addUsers(users, room.getOwners(), true, null);
             addUsers(users, room.getAdmins(), true, null);
@@ -120,16 +158,23 @@ public class NEERCComponent implements Component {
     }
     
     private void initHandlers() {
-        handlers.put("users", new UsersQueryHandler());
-        handlers.put("tasks", new TasksQueryHandler());
+        QueryHandler usersHandler = new UsersQueryHandler();
+        QueryHandler tasksHandler = new TasksQueryHandler();
+        QueryHandler channelsHandler = new ChannelsQueryHandler();
+        handlers.put("users", usersHandler);
+        handlers.put("tasks", tasksHandler);
         handlers.put("task", new TaskQueryHandler());
         handlers.put("taskstatus", new TaskStatusQueryHandler());
         handlers.put("ping", new PingQueryHandler());
+        handlers.put("snapshot", new SnapshotQueryHandler(usersHandler, tasksHandler, channelsHandler));
+        handlers.put("channels", channelsHandler);
+        handlers.put("taskstats", new TaskStatsQueryHandler());
     }
 
     public void initialize(JID jid, ComponentManager componentManager) {
         initUsers();
         initHandlers();
+        replicator.start();
     }
 
     public void start() {
@@ -139,18 +184,32 @@ public class NEERCComponent implements Component {
         message.setBody("NEERC Service start");
         sendPacket(message);
 
+        occupants = new OccupantDirectory(mucService);
+        MUCEventDispatcher.addListener(occupants);
+
         for (MUCRoom room : mucService.getChatRooms()) {
-            TaskRegistry tasks = TaskRegistry.getInstanceFor(room.getName());
+            TaskRegistry tasks = getTaskRegistry(room.getName());
             TaskRegistryListener taskListener = new MyTaskListener(room);
             tasks.addListener(taskListener);
         }
 
-        ClockService clockservice = new ClockService();
-        clockservice.addListener(new MyClockListener());
-        clockservice.start();
+        messageRouter = new MessageRouter(this, mucService);
+        InterceptorManager.getInstance().addInterceptor(messageRouter);
+
+        clockService = new ClockService();
+        clockService.addListener(new MyClockListener());
+        clockService.setPolling(replicator.isLeader());
+        clockService.start();
     }
 
     public void shutdown() {
+        replicator.stop();
+        if (messageRouter != null) {
+            InterceptorManager.getInstance().removeInterceptor(messageRouter);
+        }
+        if (occupants != null) {
+            MUCEventDispatcher.removeListener(occupants);
+        }
     }
 
     // Component Interface
@@ -234,14 +293,136 @@ public class NEERCComponent implements Component {
             reply.setError(PacketError.Condition.service_unavailable);
         } else {
             String jid = iq.getFrom().toBareJID();
-            UserRegistry users = UserRegistry.getInstanceFor(roomName);
+            UserRegistry users = getUserRegistry(roomName);
+            int count = users.getUserNumber();
             UserEntry sender = users.findOrRegister(jid);
+            if (users.getUserNumber() > count) {
+                replicator.publishApplied(RoomUpdate.user(roomName, jid));
+            }
 
             QueryHandler handler = handlers.get(query);
             handler.processQuery(this, iq, reply, sender, roomName);
         }
     }
 
+    public TaskRegistry getTaskRegistry(String roomName) {
+        synchronized (taskRegistries) {
+            TaskRegistry registry = taskRegistries.get(roomName);
+            if (registry == null) {
+                registry = TaskRegistry.newInstance();
+                taskRegistries.put(roomName, registry);
+            }
+            return registry;
+        }
+    }
+
+    public UserRegistry getUserRegistry(String roomName) {
+        synchronized (userRegistries) {
+            UserRegistry registry = userRegistries.get(roomName);
+            if (registry == null) {
+                registry = UserRegistry.newInstance();
+                userRegistries.put(roomName, registry);
+            }
+            return registry;
+        }
+    }
+
+    public ChannelRegistry getChannelRegistry(String roomName) {
+        synchronized (channelRegistries) {
+            ChannelRegistry registry = channelRegistries.get(roomName);
+            if (registry == null) {
+                registry = new ChannelRegistry();
+                channelRegistries.put(roomName, registry);
+            }
+            return registry;
+        }
+    }
+
+    public TaskStats getTaskStats(String roomName) {
+        synchronized (taskStats) {
+            TaskStats stats = taskStats.get(roomName);
+            if (stats == null) {
+                stats = new TaskStats();
+                taskStats.put(roomName, stats);
+            }
+            return stats;
+        }
+    }
+
+    public List<String> getRoomNames() {
+        List<String> names = new ArrayList<String>();
+        for (MUCRoom room : mucService.getChatRooms()) {
+            names.add(room.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Adds, replaces or removes the task on every node.
+     */
+    public void updateTask(String roomName, Task task) {
+        getTaskRegistry(roomName).assignId(task);
+        replicator.publish(RoomUpdate.task(roomName, task));
+    }
+
+    /**
+     * Sets the status of the user for the task on every node.
+     */
+    public void setTaskStatus(String roomName, String id, String user, String type, String value) {
+        replicator.publish(RoomUpdate.status(roomName, id, user, type, value));
+    }
+
+    /**
+     * Makes the channel known on every node.
+     *
+     * @return true if the channel was not known on this node before
+     */
+    public boolean addChannel(String roomName, String channel) {
+        boolean added = getChannelRegistry(roomName).addChannel(channel);
+        if (added) {
+            replicator.publishApplied(RoomUpdate.channel(roomName, channel, null, false));
+        }
+        return added;
+    }
+
+    /**
+     * Subscribes or unsubscribes the user with the given bare JID to the channel, on this node
+     * at once and then on the others.
+     */
+    public void setSubscribed(String roomName, String channel, String jid, boolean subscribed) {
+        ChannelRegistry channels = getChannelRegistry(roomName);
+        if (subscribed) {
+            channels.subscribe(channel, jid);
+        } else {
+            channels.unsubscribe(channel, jid);
+        }
+        replicator.publishApplied(RoomUpdate.channel(roomName, channel, jid, subscribed));
+    }
+
+    void clockReplicated(Clock clock) {
+        if (clockService != null && !replicator.isLeader()) {
+            clockService.setClock(clock);
+        }
+        PacketExtension extension = new PacketExtension("x", XmlUtils.NAMESPACE_CLOCK);
+        XmlUtils.clockToXml(extension.getElement(), clock);
+        String body = "The clock is ticking";
+        broadcastMessage(body, extension);
+    }
+
+    void leaderChanged(boolean leader) {
+        // only the leader reads the clock, the others learn it from the leader
+        if (clockService != null) {
+            clockService.setPolling(leader);
+        }
+    }
+
+    /**
+     * Returns the current clock, or null if the component is not started yet.
+     */
+    public Clock getClock() {
+        return clockService == null ? null : clockService.getClock();
+    }
+
     public String getDescription() {
         return "NEERC service";
     }
@@ -265,6 +446,11 @@ public class NEERCComponent implements Component {
         }
     }
 
+    /**
+     * Sends the message to the occupants connected to this node. Every node
+     * broadcasts replicated changes on its own, so occupants of other nodes
+     * hear it from their node.
+     */
     public void broadcastMessage(MUCRoom room, String body, PacketExtension extension) {
         Message message = new Message();
         message.setFrom(myName);
@@ -274,13 +460,20 @@ public class NEERCComponent implements Component {
         }
 
         for (MUCRole occupant : room.getOccupants()) {
-            occupant.send(message);
+            if (occupant.isLocal()) {
+                occupant.send(message);
+            }
         }
     }
 
+    /**
+     * Sends task changes to the users assigned to the task, before or after
+     * the change, and to power users, instead of every occupant of the room.
+     */
     private class MyTaskListener implements TaskRegistryListener {
 
         private final MUCRoom room;
+        private final Map<String, Set<String>> assignees = new HashMap<String, Set<String>>();
 
         public MyTaskListener(MUCRoom room) {
             this.room = room;
@@ -291,11 +484,53 @@ public class NEERCComponent implements Component {
             PacketExtension extension = new PacketExtension("x", XmlUtils.NAMESPACE_TASKS);
             XmlUtils.taskToXml(extension.getElement(), task);
             String body = "Task '" + task.getTitle() + "' (" + task.getId() + ") changed";
-            broadcastMessage(room, body, extension);
+
+            Message message = new Message();
+            message.setFrom(myName);
+            message.setBody(body);
+            message.addExtension(extension);
+
+            int count = 0;
+            for (String username : getRecipients(task)) {
+                for (MUCRole occupant : occupants.getOccupants(room.getName(), username)) {
+                    occupant.send(message.createCopy());
+                    count++;
+                }
+            }
+            Log.debug("Sent task " + task.getId() + " to " + count + " of " + room.getOccupantsCount() + " occupants");
+        }
+
+        private Set<String> getRecipients(Task task) {
+            Set<String> recipients = new HashSet<String>();
+            synchronized (assignees) {
+                // unassigned users still have to learn that the task is gone
+                Set<String> previous = "remove".equals(task.getType())
+                        ? assignees.remove(task.getId())
+                        : assignees.put(task.getId(), new HashSet<String>(task.getStatuses().keySet()));
+                if (previous != null) {
+                    recipients.addAll(previous);
+                }
+            }
+            recipients.addAll(task.getStatuses().keySet());
+            for (UserEntry user : getUserRegistry(room.getName()).getUsers()) {
+                if (user.isPower()) {
+                    recipients.add(user.getName());
+                }
+            }
+            return recipients;
         }
 
         @Override
-        public void tasksReset() {
+        public void tasksChanged(TaskChanges changes) {
+            for (Task task : changes.getRemoved()) {
+                taskChanged(new Task(task.getId(), "remove", ""));
+            }
+            for (Task task : changes.getAdded()) {
+                taskChanged(task);
+            }
+            for (Task task : changes.getChanged()) {
+                taskChanged(task);
+            }
         }
     }
 
@@ -303,10 +538,7 @@ public class NEERCComponent implements Component {
 
         @Override
         public void clockChanged(Clock clock) {
-            PacketExtension extension = new PacketExtension("x", XmlUtils.NAMESPACE_CLOCK);
-            XmlUtils.clockToXml(extension.getElement(), clock);
-            String body = "The clock is ticking";
-            broadcastMessage(body, extension);
+            replicator.publish(RoomUpdate.clock(clock));
         }
     }
 }
@@ -0,0 +1,155 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jivesoftware.openfire.muc.MUCEventListener;
+import org.jivesoftware.openfire.muc.MUCRole;
+import org.jivesoftware.openfire.muc.MUCRoom;
+import org.jivesoftware.openfire.muc.MultiUserChatService;
+import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Message;
+
+/**
+ * Occupants of each room by user name, kept up to date with room events,
+ * so that packets for a few users are sent without walking all occupants.
+ * Only occupants connected to this node are kept: every node applies
+ * replicated changes and sends them to its own occupants.
+ */
+public class OccupantDirectory implements MUCEventListener {
+
+	private static final Logger Log = LoggerFactory.getLogger(OccupantDirectory.class);
+
+    private final MultiUserChatService mucService;
+    private final Map<String, Map<String, List<MUCRole>>> rooms =
+            new ConcurrentHashMap<String, Map<String, List<MUCRole>>>();
+
+    public OccupantDirectory(MultiUserChatService mucService) {
+        this.mucService = mucService;
+        for (MUCRoom room : mucService.getChatRooms()) {
+            for (MUCRole occupant : room.getOccupants()) {
+                add(room.getName(), occupant);
+            }
+        }
+    }
+
+    /**
+     * Returns occupants of the room joined by the given user, possibly from several resources.
+     */
+    public List<MUCRole> getOccupants(String roomName, String username) {
+        Map<String, List<MUCRole>> occupants = rooms.get(roomName);
+        List<MUCRole> roles = occupants == null ? null : occupants.get(username.toLowerCase(Locale.ROOT));
+        return roles == null ? Collections.<MUCRole>emptyList() : roles;
+    }
+
+    private void add(String roomName, MUCRole occupant) {
+        if (!occupant.isLocal()) {
+            return;
+        }
+        Map<String, List<MUCRole>> occupants = rooms.get(roomName);
+        if (occupants == null) {
+            synchronized (rooms) {
+                occupants = rooms.get(roomName);
+                if (occupants == null) {
+                    occupants = new ConcurrentHashMap<String, List<MUCRole>>();
+                    rooms.put(roomName, occupants);
+                }
+            }
+        }
+        String username = getUsername(occupant.getUserAddress());
+        synchronized (occupants) {
+            List<MUCRole> roles = occupants.get(username);
+            if (roles == null) {
+                roles = new CopyOnWriteArrayList<MUCRole>();
+                occupants.put(username, roles);
+            }
+            roles.add(occupant);
+        }
+    }
+
+    private void remove(String roomName, JID user) {
+        Map<String, List<MUCRole>> occupants = rooms.get(roomName);
+        if (occupants == null) {
+            return;
+        }
+        String username = getUsername(user);
+        synchronized (occupants) {
+            List<MUCRole> roles = occupants.get(username);
+            if (roles == null) {
+                return;
+            }
+            for (MUCRole role : roles) {
+                if (user.equals(role.getUserAddress())) {
+                    roles.remove(role);
+                }
+            }
+            if (roles.isEmpty()) {
+                occupants.remove(username);
+            }
+        }
+    }
+
+    private static String getUsername(JID jid) {
+        String username = jid.getNode() == null ? jid.toBareJID() : jid.getNode();
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    // MUCEventListener Interface
+
+    public void roomCreated(JID roomJID) {
+    }
+
+    public void roomDestroyed(JID roomJID) {
+        rooms.remove(roomJID.getNode());
+    }
+
+    public void occupantJoined(JID roomJID, JID user, String nickname) {
+        MUCRoom room = mucService.getChatRoom(roomJID.getNode());
+        if (room == null) {
+            return;
+        }
+        try {
+            add(room.getName(), room.getOccupant(nickname));
+        } catch (UserNotFoundException e) {
+            Log.debug("Occupant " + nickname + " left " + room.getName() + " before being noticed");
+        }
+    }
+
+    public void occupantLeft(JID roomJID, JID user) {
+        remove(roomJID.getNode(), user);
+    }
+
+    public void nicknameChanged(JID roomJID, JID user, String oldNickname, String newNickname) {
+    }
+
+    public void messageReceived(JID roomJID, JID user, String nickname, Message message) {
+    }
+
+    public void privateMessageRecieved(JID toJID, JID fromJID, Message message) {
+    }
+
+    public void roomSubjectChanged(JID roomJID, JID user, String newSubject) {
+    }
+}
@@ -0,0 +1,62 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+/**
+ * Carries {@link RoomUpdate}s between the nodes of a cluster for {@link Replicator}.
+ *
+ * One node at a time is the leader. A transport need not deliver updates in order,
+ * as they are numbered, but should not lose them while the leader stays the same.
+ */
+public interface ReplicationTransport {
+
+    /**
+     * Receives updates on the node, on any thread.
+     */
+    interface Receiver {
+        /**
+         * Numbers an update sent to the leader and sends it to all nodes.
+         */
+        void sequence(RoomUpdate update);
+
+        /**
+         * Applies an update numbered by the leader.
+         */
+        void deliver(RoomUpdate update);
+
+        /**
+         * Tells that the nodes of the cluster changed, and whether this node leads now.
+         */
+        void leaderChanged(boolean leader);
+    }
+
+    void start(Receiver receiver);
+
+    void stop();
+
+    boolean isLeader();
+
+    /**
+     * Sends an update to the leader, which may be this node, to be numbered.
+     */
+    void sendToLeader(RoomUpdate update);
+
+    /**
+     * Sends a numbered update to every node, this one included.
+     * This node gets it before the call returns.
+     */
+    void broadcast(RoomUpdate update);
+}
@@ -0,0 +1,337 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.chat.user.UserRegistry;
+import ru.ifmo.neerc.clock.Clock;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskRegistry;
+
+/**
+ * Applies changes of tasks, users, channels and the clock on every node
+ * of a cluster, in the same order.
+ *
+ * Changes are sent to the leader, which numbers them per room and sends them
+ * to all nodes; each node applies the changes of a room in the order of their
+ * numbers. A new leader numbers changes from scratch in a later epoch, and
+ * the nodes apply what they have of the former epoch before moving to it.
+ * A node which joins gets the whole state after a marker, and applies
+ * only the changes numbered after the marker.
+ * Changes on their way during a change of the leader may be lost.
+ *
+ * Without a transport the node is alone, and changes are applied at once.
+ */
+public class Replicator implements ReplicationTransport.Receiver {
+
+	private static final Logger Log = LoggerFactory.getLogger(Replicator.class);
+
+    /**
+     * Number of updates waiting for a missing one, after which it is given up.
+     */
+    private static final int MAX_PENDING = 10000;
+
+    private final NEERCComponent component;
+    private final ReplicationTransport transport;
+    private final Map<String, Sequence> sequences = new HashMap<String, Sequence>();
+
+    private boolean leader;
+    private long epoch;
+    private long lastEpoch;
+
+    /**
+     * Updates of a room, or of the clock, as numbered by the leader and applied by this node.
+     */
+    private static class Sequence {
+        long issuedEpoch;
+        long issued;
+        long epoch;
+        long applied;
+        boolean awaitingState;
+        final SortedMap<Long, RoomUpdate> pending = new TreeMap<Long, RoomUpdate>();
+    }
+
+    /**
+     * @param transport the transport to other nodes, or null if the node is alone
+     */
+    public Replicator(NEERCComponent component, ReplicationTransport transport) {
+        this.component = component;
+        this.transport = transport;
+    }
+
+    public void start() {
+        if (transport == null) {
+            return;
+        }
+        boolean leading = transport.isLeader();
+        synchronized (this) {
+            leader = leading;
+            if (leading) {
+                epoch = nextEpoch();
+            }
+        }
+        transport.start(this);
+        if (!leading) {
+            transport.sendToLeader(RoomUpdate.sync());
+        }
+    }
+
+    public void stop() {
+        if (transport != null) {
+            transport.stop();
+        }
+    }
+
+    public boolean isLeader() {
+        return transport == null || transport.isLeader();
+    }
+
+    /**
+     * Applies the update on every node, this one included.
+     */
+    public void publish(RoomUpdate update) {
+        if (transport == null) {
+            Sequence sequence = getSequence(update.getRoom());
+            synchronized (sequence) {
+                apply(update);
+            }
+        } else {
+            transport.sendToLeader(update);
+        }
+    }
+
+    /**
+     * Applies the update on other nodes, as this one has applied it already.
+     * Applying the update once more must change nothing.
+     */
+    public void publishApplied(RoomUpdate update) {
+        if (transport != null) {
+            transport.sendToLeader(update);
+        }
+    }
+
+    // Receiver Interface
+
+    public void sequence(RoomUpdate update) {
+        if (update.getKind() == RoomUpdate.Kind.SYNC) {
+            sync();
+            return;
+        }
+        long currentEpoch;
+        synchronized (this) {
+            if (!leader) {
+                Log.debug("Not a leader, dropped " + update);
+                return;
+            }
+            currentEpoch = epoch;
+        }
+        Sequence sequence = getSequence(update.getRoom());
+        synchronized (sequence) {
+            if (sequence.issuedEpoch != currentEpoch) {
+                sequence.issuedEpoch = currentEpoch;
+                sequence.issued = 0;
+            }
+            update.stamp(currentEpoch, ++sequence.issued);
+            transport.broadcast(update);
+        }
+    }
+
+    public void deliver(RoomUpdate update) {
+        Sequence sequence = getSequence(update.getRoom());
+        synchronized (sequence) {
+            if (update.getEpoch() < sequence.epoch) {
+                Log.warn("Dropped " + update + " of a former leader");
+                return;
+            }
+            if (update.getEpoch() > sequence.epoch) {
+                // apply whatever came from the former leader before following the new one
+                for (RoomUpdate pending : sequence.pending.values()) {
+                    apply(pending);
+                }
+                sequence.pending.clear();
+                boolean leading;
+                synchronized (this) {
+                    leading = leader && update.getEpoch() == epoch;
+                    lastEpoch = Math.max(lastEpoch, update.getEpoch());
+                }
+                // a node which has just joined does not know where to start
+                // until the whole state comes, or the first update of the room
+                sequence.awaitingState = (sequence.epoch == 0 || sequence.awaitingState) && !leading;
+                sequence.applied = 0;
+                sequence.epoch = update.getEpoch();
+            }
+            if (sequence.awaitingState && update.getKind() == RoomUpdate.Kind.STATE) {
+                // the state which follows covers all updates before the marker
+                sequence.applied = update.getSequence() - 1;
+                sequence.pending.headMap(update.getSequence()).clear();
+                sequence.awaitingState = false;
+            }
+            if (update.getSequence() <= sequence.applied) {
+                return;
+            }
+            sequence.pending.put(update.getSequence(), update);
+            if (sequence.pending.size() > MAX_PENDING) {
+                Log.warn("Gave up waiting for update " + (sequence.applied + 1) + " in " + update.getRoom());
+                sequence.applied = sequence.pending.firstKey() - 1;
+                sequence.awaitingState = false;
+            }
+            if (sequence.awaitingState) {
+                if (sequence.pending.firstKey() != 1) {
+                    return;
+                }
+                sequence.awaitingState = false;
+            }
+            while (!sequence.pending.isEmpty() && sequence.pending.firstKey() == sequence.applied + 1) {
+                apply(sequence.pending.remove(sequence.pending.firstKey()));
+                sequence.applied++;
+            }
+        }
+    }
+
+    public void leaderChanged(boolean leading) {
+        boolean wasLeading;
+        synchronized (this) {
+            wasLeading = leader;
+            leader = leading;
+            if (leading && !wasLeading) {
+                epoch = nextEpoch();
+            }
+        }
+        if (leading != wasLeading) {
+            Log.info(leading ? "This node leads the cluster" : "Another node leads the cluster");
+            component.leaderChanged(leading);
+        }
+        if (wasLeading && !leading) {
+            // joined a cluster with a state of its own
+            transport.sendToLeader(RoomUpdate.sync());
+        }
+    }
+
+    /**
+     * Returns an epoch later than any seen. Epochs are taken from the clock,
+     * so that a new leader gets a later epoch even if it has seen nothing
+     * from the former one, as long as clocks of the nodes agree.
+     */
+    private long nextEpoch() {
+        lastEpoch = Math.max(lastEpoch + 1, System.currentTimeMillis());
+        return lastEpoch;
+    }
+
+    /**
+     * Sends the whole state to all nodes, for a node which has joined.
+     * Nodes which have the state already change nothing.
+     *
+     * The state of a room is numbered right after a marker while no other
+     * update of the room is, so it is the state after all updates before the marker,
+     * as this node applies its updates as it numbers them.
+     */
+    private void sync() {
+        for (String room : component.getRoomNames()) {
+            synchronized (getSequence(room)) {
+                sequence(RoomUpdate.state(room));
+                for (UserEntry user : component.getUserRegistry(room).getUsers()) {
+                    sequence(RoomUpdate.user(room, user.getName()));
+                }
+                ChannelRegistry channels = component.getChannelRegistry(room);
+                for (String channel : channels.getChannels()) {
+                    sequence(RoomUpdate.channel(room, channel, null, false));
+                    for (String jid : channels.getSubscribers(channel)) {
+                        sequence(RoomUpdate.channel(room, channel, jid, true));
+                    }
+                }
+                for (Task task : component.getTaskRegistry(room).getTasks()) {
+                    sequence(RoomUpdate.task(room, task));
+                }
+            }
+        }
+        synchronized (getSequence(null)) {
+            sequence(RoomUpdate.state(null));
+            Clock clock = component.getClock();
+            if (clock != null) {
+                sequence(RoomUpdate.clock(clock));
+            }
+        }
+    }
+
+    private void apply(RoomUpdate update) {
+        String room = update.getRoom();
+        String[] args;
+        switch (update.getKind()) {
+            case TASK:
+                TaskRegistry tasks = component.getTaskRegistry(room);
+                Task task = update.getTask();
+                Task current = tasks.getById(task.getId());
+                if (current == null || !update.describes(current)) {
+                    component.getTaskStats(room).taskUpdated(current, task);
+                    tasks.update(task);
+                }
+                break;
+            case STATUS:
+                args = update.getStrings();
+                TaskRegistry statusTasks = component.getTaskRegistry(room);
+                Task statusTask = statusTasks.getById(args[0]);
+                if (statusTask == null) {
+                    Log.debug("Status of unknown task " + args[0] + " in " + room);
+                    break;
+                }
+                statusTask.setStatus(args[1], args[2], args[3]);
+                statusTasks.update(statusTask);
+                break;
+            case USER:
+                UserRegistry users = component.getUserRegistry(room);
+                users.findOrRegister(update.getStrings()[0]);
+                break;
+            case CHANNEL:
+                args = update.getStrings();
+                ChannelRegistry channels = component.getChannelRegistry(room);
+                if (args[1] == null) {
+                    channels.addChannel(args[0]);
+                } else if ("yes".equals(args[2])) {
+                    channels.subscribe(args[0], args[1]);
+                } else {
+                    channels.unsubscribe(args[0], args[1]);
+                }
+                break;
+            case CLOCK:
+                component.clockReplicated(update.getClock());
+                break;
+            case STATE:
+                break;
+            default:
+                Log.warn("Unexpected " + update);
+                break;
+        }
+    }
+
+    private Sequence getSequence(String room) {
+        synchronized (sequences) {
+            Sequence sequence = sequences.get(room);
+            if (sequence == null) {
+                sequence = new Sequence();
+                sequences.put(room, sequence);
+            }
+            return sequence;
+        }
+    }
+}
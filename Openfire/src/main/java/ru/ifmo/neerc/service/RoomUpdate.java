@@ -0,0 +1,295 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+import ru.ifmo.neerc.clock.Clock;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskStatus;
+
+/**
+ * A change of the state of a room, as it is passed between cluster nodes by {@link Replicator}.
+ *
+ * The change itself is kept encoded, so that it is encoded once however many
+ * nodes it is sent to. The leader stamps it with its epoch and the next
+ * number in the room before sending it to the nodes.
+ */
+public class RoomUpdate {
+
+    public static enum Kind {
+        /** A task added, replaced or removed. */
+        TASK,
+        /** A status of a task set by its assignee. */
+        STATUS,
+        /** A user who made a query first. */
+        USER,
+        /** A channel made known, or a user subscribed or unsubscribed. */
+        CHANNEL,
+        /** The clock, not bound to any room. */
+        CLOCK,
+        /** A request of a node which joined the cluster for the whole state. */
+        SYNC,
+        /** A mark of where the whole state of a room, or of the clock, follows. */
+        STATE
+    }
+
+    private final Kind kind;
+    private final String room;
+    private final byte[] data;
+    private long epoch;
+    private long sequence;
+
+    private RoomUpdate(Kind kind, String room, byte[] data) {
+        this.kind = kind;
+        this.room = room;
+        this.data = data;
+    }
+
+    public static RoomUpdate task(String room, final Task task) {
+        return new RoomUpdate(Kind.TASK, room, encode(new Encoder() {
+            public void write(DataOutput out) throws IOException {
+                writeTask(out, task);
+            }
+        }));
+    }
+
+    public static RoomUpdate status(String room, String id, String user, String type, String value) {
+        return new RoomUpdate(Kind.STATUS, room, encodeStrings(id, user, type, value));
+    }
+
+    public static RoomUpdate user(String room, String jid) {
+        return new RoomUpdate(Kind.USER, room, encodeStrings(jid));
+    }
+
+    /**
+     * Makes the channel known and, unless the JID is null, subscribes or unsubscribes the user.
+     */
+    public static RoomUpdate channel(String room, String channel, String jid, boolean subscribed) {
+        return new RoomUpdate(Kind.CHANNEL, room, encodeStrings(channel, jid, subscribed ? "yes" : "no"));
+    }
+
+    public static RoomUpdate clock(final Clock clock) {
+        return new RoomUpdate(Kind.CLOCK, null, encode(new Encoder() {
+            public void write(DataOutput out) throws IOException {
+                out.writeLong(clock.getTime());
+                out.writeLong(clock.getTotal());
+                out.writeInt(clock.getStatus());
+            }
+        }));
+    }
+
+    public static RoomUpdate sync() {
+        return new RoomUpdate(Kind.SYNC, null, new byte[0]);
+    }
+
+    /**
+     * @param room the room, or null for the clock
+     */
+    public static RoomUpdate state(String room) {
+        return new RoomUpdate(Kind.STATE, room, new byte[0]);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the name of the room, or null for the clock and sync requests.
+     */
+    public String getRoom() {
+        return room;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    void stamp(long epoch, long sequence) {
+        this.epoch = epoch;
+        this.sequence = sequence;
+    }
+
+    public Task getTask() {
+        try {
+            return readTask(input());
+        } catch (IOException e) {
+            throw new IllegalStateException("Malformed " + kind + " update", e);
+        }
+    }
+
+    /**
+     * Tells whether the task is the same as the one of this update.
+     */
+    public boolean describes(Task task) {
+        return Arrays.equals(data, task(room, task).data);
+    }
+
+    public Clock getClock() {
+        try {
+            DataInput in = input();
+            Clock clock = new Clock();
+            clock.setTime(in.readLong());
+            clock.setTotal(in.readLong());
+            clock.setStatus(in.readInt());
+            return clock;
+        } catch (IOException e) {
+            throw new IllegalStateException("Malformed " + kind + " update", e);
+        }
+    }
+
+    /**
+     * Returns the arguments of a status, user or channel update, in the order of its factory method.
+     */
+    public String[] getStrings() {
+        try {
+            DataInput in = input();
+            String[] strings = new String[in.readByte()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+            return strings;
+        } catch (IOException e) {
+            throw new IllegalStateException("Malformed " + kind + " update", e);
+        }
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(kind.ordinal());
+        writeString(out, room);
+        out.writeLong(epoch);
+        out.writeLong(sequence);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    public static RoomUpdate readFrom(DataInput in) throws IOException {
+        Kind kind = Kind.values()[in.readByte()];
+        String room = readString(in);
+        long epoch = in.readLong();
+        long sequence = in.readLong();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        RoomUpdate update = new RoomUpdate(kind, room, data);
+        update.stamp(epoch, sequence);
+        return update;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + room + " #" + epoch + "." + sequence;
+    }
+
+    private DataInput input() {
+        return new DataInputStream(new ByteArrayInputStream(data));
+    }
+
+    private interface Encoder {
+        void write(DataOutput out) throws IOException;
+    }
+
+    private static byte[] encode(Encoder encoder) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            encoder.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // written to memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeStrings(final String... strings) {
+        return encode(new Encoder() {
+            public void write(DataOutput out) throws IOException {
+                out.writeByte(strings.length);
+                for (String string : strings) {
+                    writeString(out, string);
+                }
+            }
+        });
+    }
+
+    private static void writeTask(DataOutput out, Task task) throws IOException {
+        writeString(out, task.getId());
+        writeString(out, task.getType());
+        writeString(out, task.getTitle());
+        out.writeLong(task.getDate().getTime());
+        out.writeByte(task.getScheduleType().ordinal());
+        out.writeLong(task.getScheduleTime());
+        out.writeBoolean(task.getNeedsConfirmation());
+        Map<String, TaskStatus> statuses = task.getStatuses();
+        out.writeInt(statuses.size());
+        for (Map.Entry<String, TaskStatus> entry : statuses.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue().getType());
+            writeString(out, entry.getValue().getValue());
+        }
+    }
+
+    private static Task readTask(DataInput in) throws IOException {
+        Task task = new Task(readString(in), readString(in), readString(in), new Date(in.readLong()));
+        Task.ScheduleType scheduleType = Task.ScheduleType.values()[in.readByte()];
+        task.schedule(scheduleType, in.readLong());
+        task.setNeedsConfirmation(in.readBoolean());
+        int statusCount = in.readInt();
+        for (int i = 0; i < statusCount; i++) {
+            task.setStatus(readString(in), readString(in), readString(in));
+        }
+        return task;
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     */
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the string as its length in UTF-8 bytes, -1 for null, followed by the bytes.
+     * Unlike {@link DataOutput#writeUTF} it takes strings of any length, such as long task titles.
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskActions;
+
+/**
+ * How fast users of a room respond to tasks and get them done, by user and by task type.
+ *
+ * The time to respond runs from the assignment to the first status other than new or scheduled,
+ * the time to get done to success or failure. Times go to histograms with buckets
+ * growing twice, so that every change costs the same and memory does not grow
+ * with the number of tasks. Only the most recent assignments are followed.
+ *
+ * Assignments are noted on every node, statuses are counted by the node
+ * the user sent them to, so in a cluster each node reports its own users.
+ */
+public class TaskStats {
+
+    public static final String RESPONSE = "response";
+    public static final String DONE = "done";
+
+    /**
+     * Number of buckets, the last one takes times of 2^(BUCKETS - 2) seconds and more, about 4.5 hours.
+     */
+    public static final int BUCKETS = 16;
+
+    private static final int MAX_ASSIGNMENTS = 10000;
+
+    private final Map<String, Assignment> assignments = new LinkedHashMap<String, Assignment>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Assignment> eldest) {
+            return size() > MAX_ASSIGNMENTS;
+        }
+    };
+    private final Map<String, Histogram[]> byUser = new TreeMap<String, Histogram[]>();
+    private final Map<String, Histogram[]> byType = new TreeMap<String, Histogram[]>();
+
+    private static class Assignment {
+        final long time;
+        boolean responded;
+
+        Assignment(long time) {
+            this.time = time;
+        }
+    }
+
+    /**
+     * Times in seconds, counted into buckets of [0, 1), [1, 2), [2, 4) and so on.
+     */
+    public static class Histogram {
+        private final long[] buckets = new long[BUCKETS];
+        private long count;
+        private long total;
+        private long max;
+
+        void add(long millis) {
+            long seconds = millis / 1000;
+            int bucket = seconds == 0 ? 0 : 64 - Long.numberOfLeadingZeros(seconds);
+            buckets[Math.min(bucket, BUCKETS - 1)]++;
+            count++;
+            total += millis;
+            max = Math.max(max, millis);
+        }
+
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMillis() {
+            return total;
+        }
+
+        public long getMaxMillis() {
+            return max;
+        }
+
+        Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(buckets, 0, copy.buckets, 0, BUCKETS);
+            copy.count = count;
+            copy.total = total;
+            copy.max = max;
+            return copy;
+        }
+    }
+
+    /**
+     * Notes users assigned by the new version of the task, before it replaces the current one.
+     *
+     * @param current the task being replaced, or null
+     */
+    public synchronized void taskUpdated(Task current, Task task) {
+        if ("remove".equals(task.getType())) {
+            if (current != null) {
+                for (String user : current.getStatuses().keySet()) {
+                    assignments.remove(getKey(task.getId(), user));
+                }
+            }
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (String user : task.getStatuses().keySet()) {
+            if (current == null || current.getStatus(user) == null) {
+                assignments.put(getKey(task.getId(), user), new Assignment(now));
+            }
+        }
+    }
+
+    /**
+     * Counts the time the user took to respond or to get done, if the new status is such a step.
+     */
+    public synchronized void statusChanged(Task task, String user, String type) {
+        String key = getKey(task.getId(), user);
+        Assignment assignment = assignments.get(key);
+        if (assignment == null || TaskActions.STATUS_NEW.equals(type)
+                || TaskActions.STATUS_SCHEDULED.equals(type)) {
+            return;
+        }
+        long time = System.currentTimeMillis() - assignment.time;
+        if (!assignment.responded) {
+            assignment.responded = true;
+            add(user, task.getType(), 0, time);
+        }
+        if (TaskActions.STATUS_SUCCESS.equals(type) || TaskActions.STATUS_FAIL.equals(type)) {
+            assignments.remove(key);
+            add(user, task.getType(), 1, time);
+        }
+    }
+
+    /**
+     * Returns copies of the histograms of time to respond and time to get done by user name.
+     */
+    public synchronized Map<String, Histogram[]> getByUser() {
+        return copy(byUser);
+    }
+
+    /**
+     * Returns copies of the histograms of time to respond and time to get done by task type.
+     */
+    public synchronized Map<String, Histogram[]> getByType() {
+        return copy(byType);
+    }
+
+    private void add(String user, String type, int metric, long time) {
+        getHistograms(byUser, user)[metric].add(time);
+        getHistograms(byType, type)[metric].add(time);
+    }
+
+    private static Histogram[] getHistograms(Map<String, Histogram[]> map, String name) {
+        Histogram[] histograms = map.get(name);
+        if (histograms == null) {
+            histograms = new Histogram[] {new Histogram(), new Histogram()};
+            map.put(name, histograms);
+        }
+        return histograms;
+    }
+
+    private static Map<String, Histogram[]> copy(Map<String, Histogram[]> map) {
+        Map<String, Histogram[]> copy = new TreeMap<String, Histogram[]>();
+        for (Map.Entry<String, Histogram[]> entry : map.entrySet()) {
+            copy.put(entry.getKey(), new Histogram[] {entry.getValue()[0].copy(), entry.getValue()[1].copy()});
+        }
+        return copy;
+    }
+
+    private static String getKey(String id, String user) {
+        return id + '\n' + user;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service.query;
+
+import java.util.Iterator;
+
+import org.dom4j.Element;
+import org.xmpp.packet.IQ;
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.service.ChannelRegistry;
+import ru.ifmo.neerc.service.NEERCComponent;
+import ru.ifmo.neerc.utils.XmlCodec;
+import ru.ifmo.neerc.utils.XmlUtils;
+
+/**
+ * Applies subscribe and unsubscribe requests of the sender, if any,
+ * and answers the channels of the room with the sender's subscriptions.
+ */
+public class ChannelsQueryHandler implements QueryHandler {
+
+    public void processQuery(NEERCComponent component, IQ iq, IQ reply, UserEntry sender, String roomName) {
+        ChannelRegistry channels = component.getChannelRegistry(roomName);
+        String jid = iq.getFrom().toBareJID();
+        for (Iterator<?> it = iq.getChildElement().elementIterator(); it.hasNext(); ) {
+            Element element = (Element) it.next();
+            String channel = element.attributeValue("name");
+            if (channel == null) {
+                continue;
+            }
+            if (XmlCodec.SUBSCRIBE.equals(element.getName())) {
+                component.setSubscribed(roomName, channel, jid, true);
+            } else if (XmlCodec.UNSUBSCRIBE.equals(element.getName())) {
+                component.setSubscribed(roomName, channel, jid, false);
+            }
+        }
+
+        // the reply starts as a copy of the request
+        Element childElement = reply.getChildElement();
+        childElement.clearContent();
+        for (String channel : channels.getChannels()) {
+            XmlUtils.channelToXml(childElement, channel, channels.isSubscribed(channel, jid));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service.query;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+
+import ru.ifmo.neerc.service.NEERCComponent;
+
+/**
+ * Content of replies built from a registry, kept for each room while
+ * the revision of the registry stays the same. Many clients ask for the
+ * same content when they reconnect at once, and get copies of it.
+ */
+abstract class ReplyCache {
+
+    private final Map<String, Content> contents = new HashMap<String, Content>();
+
+    private static class Content {
+        final long revision;
+        final Element element;
+
+        Content(long revision, Element element) {
+            this.revision = revision;
+            this.element = element;
+        }
+    }
+
+    /**
+     * Adds the content for the room to the reply, building it if the revision has changed.
+     * The revision must be taken before the content is built from the registry.
+     */
+    public void addTo(Element parent, NEERCComponent component, String roomName, long revision) {
+        Content content;
+        synchronized (contents) {
+            content = contents.get(roomName);
+        }
+        String namespace = parent.getNamespaceURI();
+        if (content == null || content.revision != revision
+                || !namespace.equals(content.element.getNamespaceURI())) {
+            // children take the namespace of the parent, as they would in the reply
+            Element element = DocumentHelper.createElement(parent.getQName());
+            build(element, component, roomName);
+            content = new Content(revision, element);
+            synchronized (contents) {
+                Content current = contents.get(roomName);
+                if (current == null || current.revision <= revision) {
+                    contents.put(roomName, content);
+                }
+            }
+        }
+        for (Iterator<?> it = content.element.elementIterator(); it.hasNext(); ) {
+            parent.add(((Element) it.next()).createCopy());
+        }
+    }
+
+    protected abstract void build(Element parent, NEERCComponent component, String roomName);
+}
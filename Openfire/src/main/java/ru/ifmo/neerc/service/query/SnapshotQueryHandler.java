@@ -0,0 +1,54 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service.query;
+
+import org.xmpp.packet.IQ;
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.clock.Clock;
+import ru.ifmo.neerc.service.NEERCComponent;
+import ru.ifmo.neerc.utils.XmlUtils;
+
+/**
+ * Answers users, tasks, channels and clock at once, so that a client needs
+ * a single round trip to bootstrap after joining the room.
+ */
+public class SnapshotQueryHandler implements QueryHandler {
+
+    private final QueryHandler usersHandler;
+    private final QueryHandler tasksHandler;
+    private final QueryHandler channelsHandler;
+
+    /**
+     * Takes the handlers of the separate queries, so that their cached replies are shared.
+     */
+    public SnapshotQueryHandler(QueryHandler usersHandler, QueryHandler tasksHandler, QueryHandler channelsHandler) {
+        this.usersHandler = usersHandler;
+        this.tasksHandler = tasksHandler;
+        this.channelsHandler = channelsHandler;
+    }
+
+    public void processQuery(NEERCComponent component, IQ iq, IQ reply, UserEntry sender, String roomName) {
+        // goes first, as it discards whatever the request had in the reply
+        channelsHandler.processQuery(component, iq, reply, sender, roomName);
+        usersHandler.processQuery(component, iq, reply, sender, roomName);
+        tasksHandler.processQuery(component, iq, reply, sender, roomName);
+
+        Clock clock = component.getClock();
+        if (clock != null) {
+            XmlUtils.clockToXml(reply.getChildElement(), clock);
+        }
+    }
+}
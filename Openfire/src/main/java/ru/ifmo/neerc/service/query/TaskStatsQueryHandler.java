@@ -0,0 +1,72 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service.query;
+
+import java.util.Map;
+
+import org.dom4j.Element;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.PacketError;
+
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.service.NEERCComponent;
+import ru.ifmo.neerc.service.TaskStats;
+
+/**
+ * Replies with times users took to respond to tasks and to get them done,
+ * by user and by task type. Times are in milliseconds, and the histogram
+ * counts them by seconds in buckets of [0, 1), [1, 2), [2, 4) and so on.
+ */
+public class TaskStatsQueryHandler implements QueryHandler {
+
+    public void processQuery(NEERCComponent component, IQ iq, IQ reply, UserEntry sender, String roomName) {
+        if (!sender.isPower()) {
+            reply.setError(PacketError.Condition.forbidden);
+            return;
+        }
+        TaskStats stats = component.getTaskStats(roomName);
+        Element childElement = reply.getChildElement();
+        addStats(childElement, "user", stats.getByUser());
+        addStats(childElement, "type", stats.getByType());
+    }
+
+    private static void addStats(Element parent, String kind, Map<String, TaskStats.Histogram[]> stats) {
+        for (Map.Entry<String, TaskStats.Histogram[]> entry : stats.entrySet()) {
+            Element element = parent.addElement(kind);
+            element.addAttribute("name", entry.getKey());
+            addHistogram(element, TaskStats.RESPONSE, entry.getValue()[0]);
+            addHistogram(element, TaskStats.DONE, entry.getValue()[1]);
+        }
+    }
+
+    private static void addHistogram(Element parent, String name, TaskStats.Histogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        Element element = parent.addElement(name);
+        element.addAttribute("count", String.valueOf(histogram.getCount()));
+        element.addAttribute("mean", String.valueOf(histogram.getTotalMillis() / histogram.getCount()));
+        element.addAttribute("max", String.valueOf(histogram.getMaxMillis()));
+        StringBuilder buckets = new StringBuilder();
+        for (long count : histogram.getBuckets()) {
+            if (buckets.length() > 0) {
+                buckets.append(' ');
+            }
+            buckets.append(count);
+        }
+        element.addAttribute("histogram", buckets.toString());
+    }
+}
@@ -1,37 +1,43 @@
-/*
-   Copyright 2009 NEERC team
-
-   Licensed under the Apache License, Version 2.0 (the "License");
-   you may not use this file except in compliance with the License.
-   You may obtain a copy of the License at
-
-       http://www.apache.org/licenses/LICENSE-2.0
-
-   Unless required by applicable law or agreed to in writing, software
-   distributed under the License is distributed on an "AS IS" BASIS,
-   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
-   See the License for the specific language governing permissions and
-   limitations under the License.
-*/
-package ru.ifmo.neerc.service.query;
-
-import org.dom4j.Element;
-import org.xmpp.packet.IQ;
-import ru.ifmo.neerc.chat.user.UserEntry;
-import ru.ifmo.neerc.chat.user.UserRegistry;
-import ru.ifmo.neerc.service.NEERCComponent;
-import ru.ifmo.neerc.utils.XmlUtils;
-
-/**
- * @author Dmitriy Trofimov
- */
-public class UsersQueryHandler implements QueryHandler {
-    
-    public void processQuery(NEERCComponent component, IQ iq, IQ reply, UserEntry sender, String roomName) {
-        UserRegistry users = UserRegistry.getInstanceFor(roomName);
-        Element childElement = reply.getChildElement();
-        for (UserEntry user : users.getUsers()) {
-            XmlUtils.userToXml(childElement, user);
-        }
-    }
-}
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service.query;
+
+import org.dom4j.Element;
+import org.xmpp.packet.IQ;
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.chat.user.UserRegistry;
+import ru.ifmo.neerc.service.NEERCComponent;
+import ru.ifmo.neerc.utils.XmlUtils;
+
+/**
+ * @author Dmitriy Trofimov
+ */
+public class UsersQueryHandler implements QueryHandler {
+    
+    private final ReplyCache cache = new ReplyCache() {
+        @Override
+        protected void build(Element parent, NEERCComponent component, String roomName) {
+            for (UserEntry user : component.getUserRegistry(roomName).getUsers()) {
+                XmlUtils.userToXml(parent, user);
+            }
+        }
+    };
+
+    public void processQuery(NEERCComponent component, IQ iq, IQ reply, UserEntry sender, String roomName) {
+        UserRegistry users = component.getUserRegistry(roomName);
+        cache.addTo(reply.getChildElement(), component, roomName, users.getRevision());
+    }
+}
@@ -0,0 +1,236 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jivesoftware.openfire.muc.MUCRole;
+import org.jivesoftware.openfire.muc.MUCRoom;
+import org.jivesoftware.openfire.muc.MultiUserChatService;
+import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.xmpp.component.ComponentManager;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Packet;
+
+/**
+ * In-process stand-ins for the Openfire services used by {@link NEERCComponent}.
+ *
+ * The fakes are dynamic proxies answering only what the component asks for.
+ * Packets sent through them are serialized and counted instead of being delivered.
+ */
+public class FakeServer {
+    public static final String DOMAIN = "localhost";
+    public static final String MUC_DOMAIN = "conference." + DOMAIN;
+
+    private final Map<String, MUCRoom> rooms = new LinkedHashMap<>();
+    private final ComponentManager componentManager;
+    private final MultiUserChatService mucService;
+
+    private long packets;
+    private long bytes;
+
+    public FakeServer() {
+        componentManager = fake(ComponentManager.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "sendPacket":
+                        count((Packet) args[1]);
+                        return null;
+                    case "getServerName":
+                        return DOMAIN;
+                    default:
+                        return unsupported(proxy, method, args);
+                }
+            }
+        });
+        mucService = fake(MultiUserChatService.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getChatRooms":
+                        return new ArrayList<>(rooms.values());
+                    case "getChatRoom":
+                        return rooms.get(args[0]);
+                    case "getServiceDomain":
+                        return MUC_DOMAIN;
+                    case "getServiceName":
+                        return "conference";
+                    default:
+                        return unsupported(proxy, method, args);
+                }
+            }
+        });
+    }
+
+    public ComponentManager getComponentManager() {
+        return componentManager;
+    }
+
+    public MultiUserChatService getMultiUserChatService() {
+        return mucService;
+    }
+
+    /**
+     * Adds a room with the given number of occupants, one in twenty of them,
+     * starting from the first, admins named {@code admin-N} and the others
+     * members named {@code hall-N}. The dash keeps the names from being
+     * taken for encoded group names.
+     */
+    public MUCRoom addRoom(final String name, int occupantCount) {
+        final List<MUCRole> occupants = new ArrayList<>();
+        final List<JID> admins = new ArrayList<>();
+        final List<JID> members = new ArrayList<>();
+        final MUCRoom[] room = new MUCRoom[1];
+        room[0] = fake(MUCRoom.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws UserNotFoundException {
+                switch (method.getName()) {
+                    case "getName":
+                        return name;
+                    case "getOccupants":
+                        return Collections.unmodifiableList(occupants);
+                    case "getOccupantsCount":
+                        return occupants.size();
+                    case "getOccupantsByBareJID":
+                        List<MUCRole> roles = new ArrayList<>();
+                        for (MUCRole occupant : occupants) {
+                            if (occupant.getUserAddress().toBareJID().equals(((JID) args[0]).toBareJID())) {
+                                roles.add(occupant);
+                            }
+                        }
+                        if (roles.isEmpty()) {
+                            throw new UserNotFoundException();
+                        }
+                        return roles;
+                    case "getOccupant":
+                        for (MUCRole occupant : occupants) {
+                            if (occupant.getNickname().equals(args[0])) {
+                                return occupant;
+                            }
+                        }
+                        throw new UserNotFoundException();
+                    case "getAffiliation":
+                        JID jid = ((JID) args[0]).asBareJID();
+                        return admins.contains(jid) ? MUCRole.Affiliation.admin
+                                : members.contains(jid) ? MUCRole.Affiliation.member : MUCRole.Affiliation.none;
+                    case "getOwners":
+                        return Collections.emptyList();
+                    case "getAdmins":
+                        return admins;
+                    case "getMembers":
+                        return members;
+                    case "send":
+                        count((Packet) args[0]);
+                        return null;
+                    default:
+                        return unsupported(proxy, method, args);
+                }
+            }
+        });
+
+        for (int i = 1; i <= occupantCount; i++) {
+            boolean admin = i % 20 == 1;
+            String nickname = (admin ? "admin-" : "hall-") + i;
+            JID jid = new JID(nickname, DOMAIN, null);
+            (admin ? admins : members).add(jid);
+            occupants.add(createOccupant(room[0], new JID(nickname, DOMAIN, "chat"), nickname,
+                    admin ? MUCRole.Affiliation.admin : MUCRole.Affiliation.member));
+        }
+        rooms.put(name, room[0]);
+        return room[0];
+    }
+
+    private MUCRole createOccupant(final MUCRoom room, final JID user, final String nickname,
+                                   final MUCRole.Affiliation affiliation) {
+        final JID roleAddress = new JID(room.getName(), MUC_DOMAIN, nickname);
+        return fake(MUCRole.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "send":
+                        count((Packet) args[0]);
+                        return null;
+                    case "getUserAddress":
+                        return user;
+                    case "getRoleAddress":
+                        return roleAddress;
+                    case "getNickname":
+                        return nickname;
+                    case "getRole":
+                        return affiliation == MUCRole.Affiliation.admin ? MUCRole.Role.moderator : MUCRole.Role.participant;
+                    case "getAffiliation":
+                        return affiliation;
+                    case "getChatRoom":
+                        return room;
+                    case "isLocal":
+                        return true;
+                    default:
+                        return unsupported(proxy, method, args);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the number of packets sent since the last reset.
+     */
+    public synchronized long getPackets() {
+        return packets;
+    }
+
+    /**
+     * Returns the number of bytes sent since the last reset, as UTF-8 encoded XML.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized void reset() {
+        packets = 0;
+        bytes = 0;
+    }
+
+    private synchronized void count(Packet packet) {
+        packets++;
+        bytes += packet.toXML().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static <T> T fake(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(FakeServer.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object unsupported(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return method.getDeclaringClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+                throw new UnsupportedOperationException(method.getDeclaringClass().getSimpleName() + "." + method.getName());
+        }
+    }
+}
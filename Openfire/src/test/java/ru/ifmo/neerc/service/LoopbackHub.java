@@ -0,0 +1,191 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connects components in one JVM as if they were nodes of a cluster.
+ *
+ * Every node receives updates on a thread of its own, in the order they were
+ * sent unless reordering is on; the leader gets its own updates at once.
+ * Updates are serialized on the way, as over a network. The first node
+ * leads until another one is made the leader.
+ */
+public class LoopbackHub {
+    private static final int MAX_DELAY_MICROS = 20000;
+
+    private final List<Node> nodes = new CopyOnWriteArrayList<>();
+    private volatile Node leader;
+    private volatile boolean reordering;
+    private final ScheduledExecutorService delays = Executors.newScheduledThreadPool(1, new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Delays");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public ReplicationTransport createTransport() {
+        Node node = new Node(nodes.size());
+        nodes.add(node);
+        if (leader == null) {
+            leader = node;
+        }
+        return node;
+    }
+
+    /**
+     * Hands the lead over to the node created with the given index, e.g. when the leader fails.
+     */
+    public void setLeader(int index) {
+        Node former = leader;
+        leader = nodes.get(index);
+        for (final Node node : nodes) {
+            if (node == former || node == leader) {
+                node.execute(new Runnable() {
+                    public void run() {
+                        node.receiver.leaderChanged(node == leader);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Delays every update sent to another node at random, so that they come in any order.
+     */
+    public void setReordering(boolean reordering) {
+        this.reordering = reordering;
+    }
+
+    /**
+     * Returns the number of updates sent between nodes.
+     */
+    public long getMessages() {
+        return messages.get();
+    }
+
+    /**
+     * Returns the number of bytes of updates sent between nodes.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    private RoomUpdate transfer(RoomUpdate update) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            update.writeTo(new DataOutputStream(out));
+            messages.incrementAndGet();
+            bytes.addAndGet(out.size());
+            return RoomUpdate.readFrom(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private class Node implements ReplicationTransport {
+        private final ExecutorService executor;
+        private volatile Receiver receiver;
+
+        Node(final int index) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Node-" + index);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        void execute(Runnable runnable) {
+            executor.execute(runnable);
+        }
+
+        public void start(Receiver receiver) {
+            this.receiver = receiver;
+        }
+
+        public void stop() {
+            executor.shutdown();
+        }
+
+        public boolean isLeader() {
+            return leader == this;
+        }
+
+        public void sendToLeader(RoomUpdate update) {
+            sequence(transfer(update));
+        }
+
+        private void sequence(final RoomUpdate update) {
+            final Node target = leader;
+            target.execute(new Runnable() {
+                public void run() {
+                    if (leader == target) {
+                        target.receiver.sequence(update);
+                    } else {
+                        // the lead has moved on the way
+                        sequence(update);
+                    }
+                }
+            });
+        }
+
+        public void broadcast(RoomUpdate update) {
+            for (final Node node : nodes) {
+                final RoomUpdate copy = transfer(update);
+                if (node == this) {
+                    receiver.deliver(copy);
+                    continue;
+                }
+                final Runnable delivery = new Runnable() {
+                    public void run() {
+                        // not started yet, as if it had not joined
+                        if (node.receiver != null) {
+                            node.receiver.deliver(copy);
+                        }
+                    }
+                };
+                if (reordering) {
+                    delays.schedule(new Runnable() {
+                        public void run() {
+                            node.execute(delivery);
+                        }
+                    }, ThreadLocalRandom.current().nextInt(MAX_DELAY_MICROS), TimeUnit.MICROSECONDS);
+                } else {
+                    node.execute(delivery);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.Element;
+import org.jivesoftware.openfire.muc.MUCRoom;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.PacketExtension;
+
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskActions;
+import ru.ifmo.neerc.task.TaskRegistry;
+import ru.ifmo.neerc.utils.XmlCodec;
+import ru.ifmo.neerc.utils.XmlUtils;
+
+/**
+ * Runs {@link NEERCComponent} against {@link FakeServer}: queries for every
+ * handler and room broadcasts, at different room sizes. Besides time per
+ * operation, JMH reports packets and bytes sent per operation.
+ *
+ * Usage: gradle :Openfire:jmh [-Pjmh.args="regexp and JMH options"]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NEERCComponentBenchmark {
+    private static final int TASKS = 100;
+    private static final int ASSIGNEES = 10;
+
+    /**
+     * A component over a room filled with occupants and tasks.
+     */
+    @State(Scope.Thread)
+    public static class Room {
+        @Param({"10", "100", "500"})
+        public int occupants;
+
+        FakeServer server;
+        NEERCComponent component;
+        MUCRoom room;
+        JID service;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            server = new FakeServer();
+            room = server.addRoom("room" + occupants, occupants);
+            component = new NEERCComponent(server.getComponentManager(), server.getMultiUserChatService());
+            component.initialize(new JID(null, NEERCComponent.NAME + "." + FakeServer.DOMAIN, null),
+                    server.getComponentManager());
+            service = new JID(room.getName(), NEERCComponent.NAME + "." + FakeServer.DOMAIN, null);
+
+            TaskRegistry tasks = component.getTaskRegistry(room.getName());
+            Random random = new Random(2016);
+            for (int i = 0; i < TASKS; i++) {
+                Task task = new Task("t" + i, TaskActions.TYPE_TODO, "Task " + i);
+                for (int j = 0; j < ASSIGNEES; j++) {
+                    task.setStatus(hall(1 + random.nextInt(occupants)), TaskActions.STATUS_NEW, "");
+                }
+                task.setStatus(hall(2), TaskActions.STATUS_NEW, "");
+                tasks.update(task);
+            }
+        }
+
+        private String hall(int i) {
+            return (i % 20 == 1 ? "admin-" : "hall-") + i;
+        }
+
+        IQ createQuery(String query, IQ.Type type, String from) {
+            IQ iq = new IQ(type);
+            iq.setID(query);
+            iq.setFrom(new JID(from, FakeServer.DOMAIN, "chat"));
+            iq.setTo(service);
+            iq.setChildElement("query", NEERCComponent.NAMESPACE + "#" + query);
+            return iq;
+        }
+    }
+
+    /**
+     * One query per handler, sent by a hall, or by an admin where it is required.
+     */
+    @State(Scope.Thread)
+    public static class Query {
+        @Param({"users", "tasks", "task", "taskstatus", "ping", "snapshot", "channels"})
+        public String query;
+
+        IQ iq;
+
+        @Setup(Level.Trial)
+        public void setUp(Room room) {
+            switch (query) {
+                case "task":
+                    iq = room.createQuery(query, IQ.Type.set, "admin-1");
+                    Task task = new Task("t0", TaskActions.TYPE_TODO, "Task 0 changed");
+                    task.setStatus("hall-2", TaskActions.STATUS_NEW, "");
+                    XmlCodec.writeTaskContent(new XmlUtils.ElementSink(iq.getChildElement()), task);
+                    break;
+                case "taskstatus":
+                    iq = room.createQuery(query, IQ.Type.set, "hall-2");
+                    iq.getChildElement().addAttribute("id", "t1");
+                    iq.getChildElement().addAttribute("type", TaskActions.STATUS_RUNNING);
+                    iq.getChildElement().addAttribute("value", "");
+                    break;
+                case "channels":
+                    iq = room.createQuery(query, IQ.Type.set, "hall-2");
+                    Element subscribe = iq.getChildElement().addElement(XmlCodec.SUBSCRIBE);
+                    subscribe.addAttribute("name", "bot");
+                    break;
+                default:
+                    iq = room.createQuery(query, IQ.Type.get, "hall-2");
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Packets and bytes sent by the component, reported per operation.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Traffic {
+        public long packets;
+        public long bytes;
+
+        void add(FakeServer server) {
+            packets += server.getPackets();
+            bytes += server.getBytes();
+            server.reset();
+        }
+    }
+
+    @Benchmark
+    public void processIQ(Room room, Query query, Traffic traffic) {
+        room.component.processPacket(query.iq.createCopy());
+        traffic.add(room.server);
+    }
+
+    @Benchmark
+    public void broadcastMessage(Room room, Traffic traffic) {
+        PacketExtension extension = new PacketExtension("x", XmlUtils.NAMESPACE_TASKS);
+        XmlUtils.taskToXml(extension.getElement(), room.component.getTaskRegistry(room.room.getName()).getById("t0"));
+        room.component.broadcastMessage(room.room, "Task 'Task 0' (t0) changed", extension);
+        traffic.add(room.server);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+   Copyright 2009 NEERC team
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package ru.ifmo.neerc.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xmpp.packet.JID;
+
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskActions;
+import ru.ifmo.neerc.task.TaskChanges;
+import ru.ifmo.neerc.task.TaskRegistryListener;
+import ru.ifmo.neerc.utils.XmlCodec;
+
+/**
+ * Runs several components over {@link LoopbackHub} and {@link FakeServer}s,
+ * changes task statuses through random nodes and waits for every node
+ * to apply the changes. Reports changes per second and traffic between nodes,
+ * first with the first node leading, then after the lead moves to the last
+ * node, and checks that all nodes, including one joining at the end, agree.
+ * Then one more node joins, changes go on while it gets the state, and
+ * they come in random order; all nodes must agree again.
+ *
+ * Usage: ReplicationHarness [nodes] [updates]
+ */
+public class ReplicationHarness {
+    private static final String ROOM = "neerc";
+    private static final int OCCUPANTS = 100;
+    private static final int TASKS = 50;
+    private static final int ASSIGNEES = 20;
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+    private static final String[] STATUSES = {
+        TaskActions.STATUS_NEW, TaskActions.STATUS_RUNNING, TaskActions.STATUS_SUCCESS, TaskActions.STATUS_FAIL
+    };
+
+    private static final LoopbackHub hub = new LoopbackHub();
+    private static final List<NEERCComponent> nodes = new ArrayList<>();
+    private static final List<AtomicLong> changes = new ArrayList<>();
+    private static final Random random = new Random(2016);
+
+    public static void main(String[] args) throws Exception {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+        for (int i = 0; i < nodeCount; i++) {
+            addNode();
+        }
+        for (int i = 0; i < TASKS; i++) {
+            Task task = new Task("t" + i, TaskActions.TYPE_TODO, "Task " + i);
+            for (int j = 0; j < ASSIGNEES; j++) {
+                task.setStatus(hall(1 + random.nextInt(OCCUPANTS)), TaskActions.STATUS_NEW, "");
+            }
+            nodes.get(i % nodeCount).updateTask(ROOM, task);
+        }
+        awaitChanges(TASKS);
+
+        run("first leads", updates);
+        hub.setLeader(nodeCount - 1);
+        run("last leads", updates);
+
+        long start = System.nanoTime();
+        addNode();
+        awaitChanges(nodes.size() - 1, TASKS);
+        System.out.printf("%-12s joined in %.1f ms%n", "new node", (System.nanoTime() - start) / 1e6);
+        checkAgreement();
+
+        joinReordered(updates / 10);
+        System.exit(0);
+    }
+
+    /**
+     * Adds a node and changes statuses through other nodes while it gets the state,
+     * with updates coming in random order.
+     */
+    private static void joinReordered(final int updates) throws InterruptedException {
+        hub.setReordering(true);
+        final List<NEERCComponent> senders = new ArrayList<>(nodes);
+        Thread sender = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < updates; i++) {
+                    NEERCComponent node = senders.get(random.nextInt(senders.size()));
+                    node.setTaskStatus(ROOM, "t" + random.nextInt(TASKS), hall(1 + random.nextInt(OCCUPANTS)),
+                            STATUSES[random.nextInt(STATUSES.length)], "r" + i);
+                }
+            }
+        }, "Sender");
+        long start = System.nanoTime();
+        addNode();
+        sender.start();
+        sender.join();
+        for (int i = 0; i < senders.size(); i++) {
+            awaitChanges(i, updates);
+        }
+        // the new node applies as many changes as it gets before the state, so wait for its state instead
+        long deadline = System.nanoTime() + TIMEOUT;
+        while (!agree()) {
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+            Thread.sleep(1);
+        }
+        System.out.printf("%-12s joined in %.1f ms with updates reordered%n", "new node",
+                (System.nanoTime() - start) / 1e6);
+        checkAgreement();
+    }
+
+    private static void checkAgreement() {
+        for (int i = 1; i < nodes.size(); i++) {
+            if (!getState(nodes.get(0)).equals(getState(nodes.get(i)))) {
+                System.out.println("Node " + i + " differs from node 0");
+                System.exit(1);
+            }
+        }
+        System.out.println("All " + nodes.size() + " nodes agree");
+    }
+
+    private static boolean agree() {
+        try {
+            String state = getState(nodes.get(0));
+            for (int i = 1; i < nodes.size(); i++) {
+                if (!state.equals(getState(nodes.get(i)))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (ConcurrentModificationException e) {
+            // a task changed while it was written
+            return false;
+        }
+    }
+
+    private static void addNode() {
+        FakeServer server = new FakeServer();
+        server.addRoom(ROOM, OCCUPANTS);
+        NEERCComponent component = new NEERCComponent(server.getComponentManager(),
+                server.getMultiUserChatService(), hub.createTransport());
+        final AtomicLong counter = new AtomicLong();
+        component.getTaskRegistry(ROOM).addListener(new TaskRegistryListener() {
+            public void taskChanged(Task task) {
+                counter.incrementAndGet();
+            }
+
+            public void tasksChanged(TaskChanges changes) {
+                counter.addAndGet(changes.getAdded().size() + changes.getChanged().size()
+                        + changes.getRemoved().size());
+            }
+        });
+        component.initialize(new JID(null, NEERCComponent.NAME + "." + FakeServer.DOMAIN, null),
+                server.getComponentManager());
+        nodes.add(component);
+        changes.add(counter);
+    }
+
+    private static void run(String name, int updates) throws InterruptedException {
+        long messages = hub.getMessages();
+        long bytes = hub.getBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            NEERCComponent node = nodes.get(random.nextInt(nodes.size()));
+            String id = "t" + random.nextInt(TASKS);
+            node.setTaskStatus(ROOM, id, hall(1 + random.nextInt(OCCUPANTS)),
+                    STATUSES[random.nextInt(STATUSES.length)], "v" + i);
+        }
+        awaitChanges(updates);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-12s %d nodes: %8.0f updates/s, %5.1f messages and %6.1f bytes per update%n",
+                name, nodes.size(), updates / (nanos / 1e9),
+                (double) (hub.getMessages() - messages) / updates, (double) (hub.getBytes() - bytes) / updates);
+    }
+
+    /**
+     * Waits for every node to apply the given number of changes more.
+     */
+    private static void awaitChanges(long count) throws InterruptedException {
+        for (int i = 0; i < nodes.size(); i++) {
+            awaitChanges(i, count);
+        }
+    }
+
+    private static void awaitChanges(int node, long count) throws InterruptedException {
+        AtomicLong counter = changes.get(node);
+        long deadline = System.nanoTime() + TIMEOUT;
+        while (counter.get() < count) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Node " + node + " applied " + counter.get() + " of " + count);
+            }
+            Thread.sleep(1);
+        }
+        counter.addAndGet(-count);
+    }
+
+    private static String getState(NEERCComponent node) {
+        List<String> tasks = new ArrayList<>();
+        for (Task task : node.getTaskRegistry(ROOM).getTasks()) {
+            StringBuilder xml = new StringBuilder();
+            XmlCodec.writeTask(new XmlCodec.TextSink(xml), task);
+            tasks.add(xml.toString());
+        }
+        Collections.sort(tasks);
+        List<String> users = new ArrayList<>();
+        for (UserEntry user : node.getUserRegistry(ROOM).getUsers()) {
+            users.add(user.getName());
+        }
+        Collections.sort(users);
+        return users + "\n" + tasks;
+    }
+
+    private static String hall(int i) {
+        return (i % 20 == 1 ? "admin-" : "hall-") + i;
+    }
+}
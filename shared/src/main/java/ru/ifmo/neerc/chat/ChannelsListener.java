@@ -0,0 +1,11 @@
+package ru.ifmo.neerc.chat;
+
+import java.util.Map;
+
+public interface ChannelsListener {
+
+    /**
+     * Called with channels known in the room, mapped to whether the user is subscribed to them.
+     */
+    void channelsChanged(Map<String, Boolean> channels);
+}
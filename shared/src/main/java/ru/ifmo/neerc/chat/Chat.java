@@ -12,4 +12,6 @@ public interface Chat {
     public void sendTask(Task task);
 
     public void sendTaskStatus(Task task, TaskStatus status);
+
+    public void setSubscribed(String channel, boolean subscribed);
 }
@@ -2,21 +2,17 @@ package ru.ifmo.neerc.chat;
 
 import java.io.Serializable;
 import java.util.Date;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import ru.ifmo.neerc.chat.user.UserEntry;
 
 public class ChatMessage implements Comparable<ChatMessage>, Serializable {
-    private static final Pattern MESSAGE_PATTERN =
-        Pattern.compile("^(?:([a-zA-Z0-9%]+)>)? *(#+|\\?+|!+)?(.*)$", Pattern.DOTALL);
-
     private String text;
     private UserEntry user;
     private String to;
     private Date date;
     private Type type;
     private int priority;
+    private String id;
 
     public ChatMessage(String text) {
         this(text, null);
@@ -49,6 +45,18 @@ public class ChatMessage implements Comparable<ChatMessage>, Serializable {
         return text;
     }
 
+    /**
+     * Returns the id of the stanza which carried the message, the same whenever
+     * the message is delivered again, e.g. in the room history, or null if unknown.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
     public void setType(Type type) {
         this.type = type;
     }
@@ -65,30 +73,73 @@ public class ChatMessage implements Comparable<ChatMessage>, Serializable {
         return priority;
     }
 
+    /**
+     * Returns the message text with addressee and priority prefixes,
+     * in the same form as it is sent to the room and parsed back.
+     */
+    public String getRawText() {
+        char c = ' ';
+        switch (type) {
+            case info:
+                c = '#';
+                break;
+            case question:
+                c = '?';
+                break;
+            case urgent:
+                c = '!';
+                break;
+        }
+        StringBuilder builder = new StringBuilder();
+        if (to != null) {
+            builder.append(to).append("> ");
+        }
+        for (int i = 0; i < priority; i++) {
+            builder.append(c);
+        }
+        return builder.append(text).toString();
+    }
+
     public int compareTo(ChatMessage message) {
-        return getDate().compareTo(message.getDate());
+        int result = getDate().compareTo(message.getDate());
+        if (result != 0) {
+            return result;
+        }
+        // ids are given by the sender
+        result = getSenderName().compareTo(message.getSenderName());
+        if (result != 0 || id == message.id) {
+            return result;
+        }
+        if (id == null || message.id == null) {
+            return id == null ? -1 : 1;
+        }
+        return id.compareTo(message.id);
+    }
+
+    private String getSenderName() {
+        return user == null || user.getName() == null ? "" : user.getName();
     }
 
     protected void parseMessage(String text) {
-        Matcher matcher = MESSAGE_PATTERN.matcher(text);
-        if (!matcher.matches()) {
-            this.text = text;
-            return;
+        int start = ChatSyntax.getAddresseeLength(text);
+        boolean addressed = start > 0;
+        if (addressed) {
+            to = text.substring(0, start);
+            start++;
         }
+        while (start < text.length() && text.charAt(start) == ' ') {
+            start++;
+        }
+        int priorityLength = ChatSyntax.getPriorityLength(text, start);
+        this.text = text.substring(start + priorityLength);
 
-        this.text = matcher.group(3);
-
-        if (matcher.group(1) != null) {
-            to = matcher.group(1);
-            if (to.charAt(0) == '%') {
-                type = Type.channel;
-                return;
-            }
+        if (addressed && to.charAt(0) == '%') {
+            type = Type.channel;
+            return;
         }
-        
-        String typeString = matcher.group(2);
-        if (typeString != null) {
-            switch (typeString.charAt(0)) {
+
+        if (priorityLength > 0) {
+            switch (text.charAt(start)) {
             case '#':
                 type = Type.info;
                 break;
@@ -100,7 +151,7 @@ public class ChatMessage implements Comparable<ChatMessage>, Serializable {
                 break;
             }
 
-            priority = typeString.length();
+            priority = priorityLength;
         } else {
             type = Type.normal;
         }
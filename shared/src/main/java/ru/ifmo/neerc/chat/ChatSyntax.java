@@ -0,0 +1,306 @@
+package ru.ifmo.neerc.chat;
+
+import ru.ifmo.neerc.task.Task;
+
+/**
+ * Hand-written scanner for the chat syntax: the <code>to&gt;</code> and
+ * <code>#?!</code> message prefixes, <code>@todo</code>-like task commands
+ * and <code>/s</code>, <code>/d</code> channel commands.
+ *
+ * Each method makes a single pass over the text and allocates only
+ * when it finds something to return.
+ */
+public final class ChatSyntax {
+    private static final String[] TASK_KEYWORDS = {
+        "todo", "todofail", "task", "confirm", "ok", "okfail", "reason", "question", "q"
+    };
+
+    /**
+     * Hide utility class contructor.
+     */
+    private ChatSyntax() {
+    }
+
+    /**
+     * Returns the length of the addressee in the <code>to&gt;</code> prefix of the text,
+     * or 0 if the text has no such prefix.
+     */
+    public static int getAddresseeLength(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && isAddresseeChar(text.charAt(i))) {
+            i++;
+        }
+        return i > 0 && i < length && text.charAt(i) == '>' ? i : 0;
+    }
+
+    /**
+     * Returns the length of the run of equal priority marks (<code>#</code>,
+     * <code>?</code> or <code>!</code>) starting at the given position.
+     */
+    public static int getPriorityLength(CharSequence text, int start) {
+        int length = text.length();
+        if (start >= length) {
+            return 0;
+        }
+        char mark = text.charAt(start);
+        if (mark != '#' && mark != '?' && mark != '!') {
+            return 0;
+        }
+        int i = start + 1;
+        while (i < length && text.charAt(i) == mark) {
+            i++;
+        }
+        return i - start;
+    }
+
+    /**
+     * Checks whether the text looks like a command, including mistyped ones,
+     * that is <code>@word</code> or <code>/word</code> followed by a space.
+     * Such texts are not echoed to the chat.
+     */
+    public static boolean isCommand(CharSequence text) {
+        int length = text.length();
+        if (length == 0 || (text.charAt(0) != '@' && text.charAt(0) != '/')) {
+            return false;
+        }
+        int i = skipWord(text, 1, length);
+        return i > 1 && i < length && text.charAt(i) == ' ';
+    }
+
+    /**
+     * Parses a channel command <code>/&lt;command&gt; %channel</code>.
+     *
+     * @return the channel name including the leading <code>%</code>,
+     *         or null if the text is not such a command
+     */
+    public static String parseChannelCommand(CharSequence text, char command) {
+        int length = text.length();
+        if (length < 2 || text.charAt(0) != '/' || text.charAt(1) != command) {
+            return null;
+        }
+        int start = skipSpaces(text, 2, length);
+        if (start == 2 || start >= length || text.charAt(start) != '%') {
+            return null;
+        }
+        int end = skipWord(text, start + 1, length);
+        if (end == start + 1) {
+            return null;
+        }
+        int i = skipSpaces(text, end, length);
+        // a single trailing line separator is allowed, as for the regex $
+        if (i < length && !(i == length - 1 && isLineTerminator(text.charAt(i)))) {
+            return null;
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    /**
+     * Finds the next task command, which takes a whole line of the text:
+     * <pre>@type[ assignees][ start|end[+-minutes][!]] title</pre>
+     *
+     * @param from position to start the search at, 0 or the end of the previous command
+     * @return the command or null if there are no more commands
+     */
+    public static TaskCommand findTaskCommand(String text, int from) {
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            if (text.charAt(i) != '@' || (i > 0 && !isLineTerminator(text.charAt(i - 1)))) {
+                continue;
+            }
+            TaskCommand command = parseTaskCommand(text, i, length);
+            if (command != null) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private static TaskCommand parseTaskCommand(String text, int start, int length) {
+        int space = start + 1;
+        while (space < length && text.charAt(space) >= 'a' && text.charAt(space) <= 'z') {
+            space++;
+        }
+        if (space >= length || text.charAt(space) != ' ') {
+            return null;
+        }
+        String keyword = findKeyword(text, start + 1, space);
+        if (keyword == null) {
+            return null;
+        }
+
+        int end = space + 1;
+        while (end < length && !isLineTerminator(text.charAt(end))) {
+            end++;
+        }
+
+        TaskCommand command = new TaskCommand(keyword, end);
+        int assigneesEnd = skipAssignees(text, space + 1, length);
+        if (assigneesEnd > space + 1 && assigneesEnd < length && text.charAt(assigneesEnd) == ' ') {
+            command.to = text.substring(space + 1, assigneesEnd);
+            space = assigneesEnd;
+        }
+        int titleStart = parseSchedule(text, space, length, command) + 1;
+        command.title = text.substring(titleStart, end);
+        return command;
+    }
+
+    private static String findKeyword(String text, int start, int end) {
+        for (String keyword : TASK_KEYWORDS) {
+            if (keyword.length() == end - start && text.startsWith(keyword, start)) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses <code> start|end[+-minutes][!]</code> followed by a space at the given space.
+     *
+     * @return the position of the space following the schedule, or the given position if there is none
+     */
+    private static int parseSchedule(String text, int space, int length, TaskCommand command) {
+        int i = space + 1;
+        Task.ScheduleType scheduleType;
+        if (text.startsWith("start", i)) {
+            scheduleType = Task.ScheduleType.CONTEST_START;
+            i += 5;
+        } else if (text.startsWith("end", i)) {
+            scheduleType = Task.ScheduleType.CONTEST_END;
+            i += 3;
+        } else {
+            return space;
+        }
+
+        int offsetStart = -1;
+        int offsetEnd = -1;
+        if (i + 1 < length && (text.charAt(i) == '+' || text.charAt(i) == '-') && isDigit(text.charAt(i + 1))) {
+            offsetStart = i;
+            i += 2;
+            while (i < length && isDigit(text.charAt(i))) {
+                i++;
+            }
+            offsetEnd = i;
+        }
+        boolean needsConfirmation = true;
+        if (i < length && text.charAt(i) == '!') {
+            needsConfirmation = false;
+            i++;
+        }
+        if (i >= length || text.charAt(i) != ' ') {
+            return space;
+        }
+
+        command.scheduleType = scheduleType;
+        command.offsetStart = offsetStart;
+        command.offsetEnd = offsetEnd;
+        command.needsConfirmation = needsConfirmation;
+        command.text = text;
+        return i;
+    }
+
+    private static int skipWord(CharSequence text, int i, int length) {
+        while (i < length && isWordChar(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipAssignees(CharSequence text, int i, int length) {
+        while (i < length && (isWordChar(text.charAt(i)) || text.charAt(i) == ',')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipSpaces(CharSequence text, int i, int length) {
+        while (i < length && isSpace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isAddresseeChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '%';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * One parsed task command.
+     */
+    public static class TaskCommand {
+        private final String keyword;
+        private final int end;
+        private String to = "";
+        private String title;
+        private Task.ScheduleType scheduleType;
+        private String text;
+        private int offsetStart;
+        private int offsetEnd;
+        private boolean needsConfirmation;
+
+        private TaskCommand(String keyword, int end) {
+            this.keyword = keyword;
+            this.end = end;
+        }
+
+        /**
+         * Returns the command keyword as typed, e.g. <code>todo</code> or <code>q</code>.
+         */
+        public String getKeyword() {
+            return keyword;
+        }
+
+        /**
+         * Returns comma separated assignees, or an empty string.
+         */
+        public String getTo() {
+            return to;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public boolean isScheduled() {
+            return scheduleType != null;
+        }
+
+        public Task.ScheduleType getScheduleType() {
+            return scheduleType;
+        }
+
+        /**
+         * Returns the schedule offset in milliseconds.
+         */
+        public long getScheduleTime() {
+            return offsetStart < 0 ? 0 : Integer.parseInt(text.substring(offsetStart, offsetEnd)) * 60000;
+        }
+
+        public boolean getNeedsConfirmation() {
+            return needsConfirmation;
+        }
+
+        /**
+         * Returns the position in the text right after the command.
+         */
+        public int getEnd() {
+            return end;
+        }
+    }
+}
@@ -32,6 +32,8 @@ public class UserRegistry {
 
     private Collection<UserRegistryListener> listeners = new ArrayList<UserRegistryListener>();
 
+    private volatile long revision;
+
     /**
      * Returns user registry instance.
      *
@@ -50,12 +52,28 @@ public class UserRegistry {
         return userRegistry;
     }
 
+    /**
+     * Creates a registry of its own, not shared through {@link #getInstanceFor},
+     * e.g. for one of several server nodes running in the same JVM.
+     */
+    public static UserRegistry newInstance() {
+        return new UserRegistry();
+    }
+
     /**
      * Hide default constructor.
      */
     private UserRegistry() {
     }
 
+    /**
+     * Returns a number which changes whenever users are registered or their power changes,
+     * e.g. to tell whether something built from the users is still up to date.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
     public Collection<UserEntry> getUsers() {
         return Collections.unmodifiableCollection(userById.values());
     }
@@ -84,6 +102,7 @@ public class UserRegistry {
             );
             userByName.put(user.getName(), user);
             userById.put(user.getId(), user);
+            revision++;
             notifyListeners(user);
         }
         return user;
@@ -108,6 +127,7 @@ public class UserRegistry {
         UserEntry user = findOrRegister(jid);
         if (power != user.isPower()) {
             user.setPower(power);
+            revision++;
             notifyListeners(user);
         }
     }
@@ -1,9 +1,9 @@
-package ru.ifmo.neerc.clock;
-
-/**
- * @author Evgeny Mandrikov
- */
-public interface ClockListener {
-
-    void clockChanged(Clock clock);
-}
+package ru.ifmo.neerc.clock;
+
+/**
+ * @author Evgeny Mandrikov
+ */
+public interface ClockListener {
+
+    void clockChanged(Clock clock);
+}
@@ -1,9 +1,15 @@
 package ru.ifmo.neerc.task;
 
-import java.util.Collections;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * @author Evgeny Mandrikov
@@ -25,12 +31,31 @@ public class Task implements Comparable<Task>{
     
     private Date date = new Date();
 
-    private Map<String, TaskStatus> statuses = new HashMap<String, TaskStatus>();
+    private static final int[] NO_USERS = new int[0];
+    private static final byte[] NO_TYPES = new byte[0];
+
+    /*
+     * Statuses are stored in columns sorted by user ordinal, see TaskStatusCodes.
+     * Values are mostly absent, so their column is allocated on first use.
+     */
+    private int[] statusUsers = NO_USERS;
+    private byte[] statusTypes = NO_TYPES;
+    private String[] statusValues;
+    private int statusCount;
+    private int statusModCount;
+    /*
+     * Number of statuses of each type, indexed by type code,
+     * kept up to date by setStatus so that aggregates need no scan.
+     */
+    private int[] typeCounts = new int[8];
+    private final Map<String, TaskStatus> statuses = new StatusMap();
 
     private ScheduleType scheduleType = ScheduleType.NONE;
     private long scheduleTime = 0;
     private boolean needsConfirmation = true;
 
+    private int revision = 0;
+
     public Task(String type, String title) {
     	this.type = type;
         this.title = title;
@@ -62,31 +87,106 @@ public class Task implements Comparable<Task>{
         return date;
     }
 
+    /**
+     * Returns a read-only view of the statuses by user name.
+     * Statuses returned by the view are snapshots and do not change with the task.
+     */
     public Map<String, TaskStatus> getStatuses() {
-        return Collections.unmodifiableMap(statuses);
+        return statuses;
     }
 
-    public void setStatus(String from, String type, String value) {
-        TaskStatus status = statuses.get(from);
-        if (status == null) {
-            status = new TaskStatus();
-            statuses.put(from, status);
+    public synchronized void setStatus(String from, String type, String value) {
+        int user = TaskStatusCodes.userOrdinal(from);
+        byte code = TaskStatusCodes.typeCode(type);
+        int index = Arrays.binarySearch(statusUsers, 0, statusCount, user);
+        if (index < 0) {
+            index = -index - 1;
+            insertStatus(index, user);
+        } else {
+            typeCounts[statusTypes[index] & 0xff]--;
+        }
+        statusTypes[index] = code;
+        if ((code & 0xff) >= typeCounts.length) {
+            typeCounts = Arrays.copyOf(typeCounts, (code & 0xff) + 1);
         }
-        status.setType(type);
-        status.setValue(value);
+        typeCounts[code & 0xff]++;
+        if (value != null && statusValues == null) {
+            statusValues = new String[statusUsers.length];
+        }
+        if (statusValues != null) {
+            statusValues[index] = value == null || !value.isEmpty() ? value : "";
+        }
+        revision++;
     }
-    
-    public TaskStatus getStatus(String from) {
-        return statuses.get(from);
+
+    private void insertStatus(int index, int user) {
+        if (statusCount == statusUsers.length) {
+            int capacity = Math.max(4, statusCount + (statusCount >> 1));
+            statusUsers = Arrays.copyOf(statusUsers, capacity);
+            statusTypes = Arrays.copyOf(statusTypes, capacity);
+            if (statusValues != null) {
+                statusValues = Arrays.copyOf(statusValues, capacity);
+            }
+        }
+        int tail = statusCount - index;
+        System.arraycopy(statusUsers, index, statusUsers, index + 1, tail);
+        System.arraycopy(statusTypes, index, statusTypes, index + 1, tail);
+        if (statusValues != null) {
+            System.arraycopy(statusValues, index, statusValues, index + 1, tail);
+            statusValues[index] = null;
+        }
+        statusUsers[index] = user;
+        statusCount++;
+        statusModCount++;
+    }
+
+    public synchronized TaskStatus getStatus(String from) {
+        int index = indexOfStatus(from);
+        return index < 0 ? null : statusAt(index);
+    }
+
+    /**
+     * Returns the number of users whose status is of the given type.
+     */
+    public synchronized int getStatusCount(String type) {
+        int code = TaskStatusCodes.findTypeCode(type);
+        return code < 0 || code >= typeCounts.length ? 0 : typeCounts[code];
+    }
+
+    /**
+     * Returns the number of users with each status type present in the task.
+     */
+    public synchronized Map<String, Integer> getStatusCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        for (int code = 0; code < typeCounts.length; code++) {
+            if (typeCounts[code] > 0) {
+                counts.put(TaskStatusCodes.typeName((byte) code), typeCounts[code]);
+            }
+        }
+        return counts;
+    }
+
+    private int indexOfStatus(Object from) {
+        int user = TaskStatusCodes.findUserOrdinal(from);
+        return user < 0 ? -1 : Arrays.binarySearch(statusUsers, 0, statusCount, user);
+    }
+
+    private TaskStatus statusAt(int index) {
+        return new TaskStatus(
+                TaskStatusCodes.typeName(statusTypes[index]),
+                statusValues == null ? null : statusValues[index]
+        );
     }
 
     public void setId(String id) {
         this.id = id;
+        revision++;
     }
 
     public void schedule(ScheduleType type, long time) {
         scheduleType = type;
         scheduleTime = time;
+        revision++;
     }
 
     public ScheduleType getScheduleType() {
@@ -99,12 +199,118 @@ public class Task implements Comparable<Task>{
 
     public void setNeedsConfirmation(boolean needsConfirmation) {
         this.needsConfirmation = needsConfirmation;
+        revision++;
     }
 
     public boolean getNeedsConfirmation() {
         return needsConfirmation;
     }
 
+    /**
+     * Tells whether the other task has the same contents, e.g. as a newer copy of this one
+     * which need not replace it. The other task must not be shared, as it is locked after this one.
+     */
+    synchronized boolean hasSameContent(Task other) {
+        synchronized (other) {
+            if (!equal(id, other.id) || !equal(type, other.type) || !equal(title, other.title)
+                    || !equal(date, other.date) || scheduleType != other.scheduleType
+                    || scheduleTime != other.scheduleTime || needsConfirmation != other.needsConfirmation
+                    || statusCount != other.statusCount) {
+                return false;
+            }
+            for (int i = 0; i < statusCount; i++) {
+                if (statusUsers[i] != other.statusUsers[i] || statusTypes[i] != other.statusTypes[i]
+                        || !equal(statusValues == null ? null : statusValues[i],
+                                other.statusValues == null ? null : other.statusValues[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Returns a counter which changes every time the task is modified in place,
+     * so that views can cache whatever they derive from it.
+     */
+    public int getRevision() {
+        return revision;
+    }
+
+    private class StatusMap extends AbstractMap<String, TaskStatus> {
+        private final Set<Map.Entry<String, TaskStatus>> entries = new AbstractSet<Map.Entry<String, TaskStatus>>() {
+            @Override
+            public Iterator<Map.Entry<String, TaskStatus>> iterator() {
+                return new StatusIterator();
+            }
+
+            @Override
+            public int size() {
+                return statusCount;
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<String, TaskStatus>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public int size() {
+            return statusCount;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            synchronized (Task.this) {
+                return indexOfStatus(key) >= 0;
+            }
+        }
+
+        @Override
+        public TaskStatus get(Object key) {
+            synchronized (Task.this) {
+                int index = indexOfStatus(key);
+                return index < 0 ? null : statusAt(index);
+            }
+        }
+    }
+
+    private class StatusIterator implements Iterator<Map.Entry<String, TaskStatus>> {
+        private final int expectedModCount = statusModCount;
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            return index < statusCount;
+        }
+
+        @Override
+        public Map.Entry<String, TaskStatus> next() {
+            synchronized (Task.this) {
+                if (statusModCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (index >= statusCount) {
+                    throw new NoSuchElementException();
+                }
+                String name = TaskStatusCodes.userName(statusUsers[index]);
+                TaskStatus status = statusAt(index);
+                index++;
+                return new AbstractMap.SimpleImmutableEntry<String, TaskStatus>(name, status);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
 	@Override
 	public int compareTo(Task arg0) {
 		return date.compareTo(arg0.getDate());
@@ -18,10 +18,31 @@ public class TaskActions {
     public static final String STATUS_SCHEDULED = "scheduled";
     public static final String STATUS_SCHEDULED_CONFIRM = "scheduled_confirm";
 
+    private static final String[] STATUS_TYPES = {
+        STATUS_NEW, STATUS_ACK, STATUS_RUNNING, STATUS_SUCCESS, STATUS_FAIL,
+        STATUS_SCHEDULED, STATUS_SCHEDULED_CONFIRM
+    };
+
     public static final int ACTION_START = 0;
     public static final int ACTION_DONE = 1;
     public static final int ACTION_FAIL = 2;
 
+    /**
+     * Returns all status types a task may have.
+     */
+    public static String[] getStatusTypes() {
+        return STATUS_TYPES.clone();
+    }
+
+    public static boolean isStatusType(String type) {
+        for (String statusType : STATUS_TYPES) {
+            if (statusType.equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static boolean isActionSupported(Task task, String user, int action) {
         if (task == null) {
             return false;
@@ -75,6 +96,28 @@ public class TaskActions {
         throw new IllegalArgumentException();
     }
     
+    /**
+     * Returns the status standing for the task as a whole: failed if anyone failed,
+     * otherwise running if anyone is running, new until everyone succeeded,
+     * or null if the task is assigned to nobody.
+     */
+    public static String getSummaryStatus(Task task) {
+        int total = task.getStatuses().size();
+        if (total == 0) {
+            return null;
+        }
+        if (task.getStatusCount(STATUS_FAIL) > 0) {
+            return STATUS_FAIL;
+        }
+        if (task.getStatusCount(STATUS_RUNNING) > 0) {
+            return STATUS_RUNNING;
+        }
+        if (task.getStatusCount(STATUS_SUCCESS) < total) {
+            return STATUS_NEW;
+        }
+        return STATUS_SUCCESS;
+    }
+
     public static String getTypeByAlias(String type) {
         if ("task".equals(type)) return TYPE_TODO;
         if ("ok".equals(type)) return TYPE_CONFIRM;
@@ -0,0 +1,55 @@
+package ru.ifmo.neerc.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tasks added, changed and removed at once, e.g. when the registry is replaced
+ * with a snapshot from the server, so that listeners can handle them in one pass.
+ */
+public class TaskChanges {
+
+    private final List<Task> added = new ArrayList<Task>();
+    private final List<Task> changed = new ArrayList<Task>();
+    private final List<Task> removed = new ArrayList<Task>();
+
+    void add(Task task) {
+        added.add(task);
+    }
+
+    void change(Task task) {
+        changed.add(task);
+    }
+
+    void remove(Task task) {
+        removed.add(task);
+    }
+
+    public List<Task> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    /**
+     * Returns the new versions of changed tasks, which have replaced the former ones.
+     */
+    public List<Task> getChanged() {
+        return Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * Returns the removed tasks as they were before the removal.
+     */
+    public List<Task> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " added, " + changed.size() + " changed, " + removed.size() + " removed";
+    }
+}
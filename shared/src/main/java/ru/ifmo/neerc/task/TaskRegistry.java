@@ -1,6 +1,7 @@
 package ru.ifmo.neerc.task;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Evgeny Mandrikov
@@ -13,6 +14,8 @@ public final class TaskRegistry {
 
     private final Collection<TaskRegistryListener> listeners = new ArrayList<TaskRegistryListener>();
 
+    private final AtomicLong revision = new AtomicLong();
+
     public static TaskRegistry getInstance() {
         return getInstanceFor(null);
     }
@@ -26,6 +29,14 @@ public final class TaskRegistry {
         return taskRegistry;
     }
 
+    /**
+     * Creates a registry of its own, not shared through {@link #getInstanceFor},
+     * e.g. for one of several server nodes running in the same JVM.
+     */
+    public static TaskRegistry newInstance() {
+        return new TaskRegistry();
+    }
+
     /**
      * Hide default constructor.
      */
@@ -36,6 +47,14 @@ public final class TaskRegistry {
         return Collections.unmodifiableCollection(tasks.values());
     }
 
+    /**
+     * Returns a number which changes whenever tasks are added, changed or removed,
+     * e.g. to tell whether something built from the tasks is still up to date.
+     */
+    public long getRevision() {
+        return revision.get();
+    }
+
     public void addListener(TaskRegistryListener listener) {
         listeners.add(listener);
     }
@@ -46,9 +65,9 @@ public final class TaskRegistry {
         }
     }
 
-    private void notifyResetListeners() {
+    private void notifyListeners(TaskChanges changes) {
         for (TaskRegistryListener listener : listeners) {
-            listener.tasksReset();
+            listener.tasksChanged(changes);
         }
     }
 
@@ -60,32 +79,76 @@ public final class TaskRegistry {
         return tasks.get(id);
     }
     
-    public void reset() {
-        Iterator<Map.Entry<String, Task>> it = tasks.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, Task> entry = it.next();
-
-            if (entry.getValue().getScheduleType() == Task.ScheduleType.NONE)
-                it.remove();
+    /**
+     * Replaces the tasks with the snapshot, keeping tasks scheduled locally,
+     * and tells listeners once what was added, changed and removed.
+     * Tasks which have not changed are kept as they are.
+     */
+    public void replaceAll(Collection<Task> snapshot) {
+        TaskChanges changes = new TaskChanges();
+        synchronized (this) {
+            Set<String> ids = new HashSet<String>();
+            for (Task task : snapshot) {
+                ids.add(task.getId());
+                Task current = tasks.get(task.getId());
+                if (current == null) {
+                    tasks.put(task.getId(), task);
+                    changes.add(task);
+                } else if (!current.hasSameContent(task)) {
+                    tasks.put(task.getId(), task);
+                    changes.change(task);
+                }
+            }
+            Iterator<Task> it = tasks.values().iterator();
+            while (it.hasNext()) {
+                Task task = it.next();
+                if (task.getScheduleType() == Task.ScheduleType.NONE && !ids.contains(task.getId())) {
+                    it.remove();
+                    changes.remove(task);
+                }
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+            revision.incrementAndGet();
         }
 
-        notifyResetListeners();
+        notifyListeners(changes);
     }
     
     public void update(Task task) {
-        String id = task.getId();
-        if ("remove".equals(task.getType())) {
-            tasks.remove(id);
-        } else if (id == null) {
-            id = genId();
+        synchronized (this) {
+            if ("remove".equals(task.getType())) {
+                tasks.remove(task.getId());
+            } else {
+                assignId(task);
+                tasks.put(task.getId(), task);
+            }
+            revision.incrementAndGet();
+        }
+        notifyListeners(task);
+    }
+
+    /**
+     * Returns a copy of the tasks taken under the same lock that {@link #update}
+     * and {@link #replaceAll} hold while changing them. The tasks themselves are
+     * not copied, lock a task to read its statuses.
+     */
+    public synchronized List<Task> snapshot() {
+        return new ArrayList<Task>(tasks.values());
+    }
+
+    /**
+     * Gives a new task an id, as {@link #update} does, so that the id is known
+     * before the task is added.
+     */
+    public void assignId(Task task) {
+        if (task.getId() == null) {
+            String id = genId();
             if (task.getScheduleType() != Task.ScheduleType.NONE)
                 id = "s" + id;
             task.setId(id);
-            tasks.put(id, task);
-        } else {
-            tasks.put(id, task);
         }
-        notifyListeners(task);
     }
 
     public List<Task> getAssignedTasks(String user) {
@@ -6,5 +6,9 @@ package ru.ifmo.neerc.task;
 public interface TaskRegistryListener {
 
     void taskChanged(Task task);
-    void tasksReset();
+
+    /**
+     * Called once for all tasks changed at once by {@link TaskRegistry#replaceAll}.
+     */
+    void tasksChanged(TaskChanges changes);
 }
@@ -0,0 +1,84 @@
+package ru.ifmo.neerc.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense codes for user names and status types, shared by all tasks,
+ * so that tasks can keep their statuses in primitive arrays.
+ *
+ * User ordinals are ints given out in the order users are first seen;
+ * status types are byte codes. Codes are never reused, so the server lets in
+ * only the status types of {@link TaskActions}, which have codes from the start.
+ */
+final class TaskStatusCodes {
+    private static final int MAX_TYPES = 256;
+
+    private static final Map<String, Integer> userOrdinals = new HashMap<String, Integer>();
+    private static final List<String> userNames = new ArrayList<String>();
+
+    private static final Map<String, Integer> typeCodes = new HashMap<String, Integer>();
+    private static final List<String> typeNames = new ArrayList<String>();
+
+    static {
+        // the usual types get stable codes
+        for (String type : TaskActions.getStatusTypes()) {
+            typeCode(type);
+        }
+    }
+
+    /**
+     * Hide utility class contructor.
+     */
+    private TaskStatusCodes() {
+    }
+
+    static synchronized int userOrdinal(String name) {
+        Integer ordinal = userOrdinals.get(name);
+        if (ordinal == null) {
+            ordinal = userNames.size();
+            userOrdinals.put(name, ordinal);
+            userNames.add(name);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Returns the ordinal of a known user, or -1 for a user no task has ever seen.
+     */
+    static synchronized int findUserOrdinal(Object name) {
+        Integer ordinal = userOrdinals.get(name);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    static synchronized String userName(int ordinal) {
+        return userNames.get(ordinal);
+    }
+
+    static synchronized byte typeCode(String type) {
+        Integer code = typeCodes.get(type);
+        if (code == null) {
+            if (typeNames.size() == MAX_TYPES) {
+                throw new IllegalArgumentException("Too many distinct task status types: " + type);
+            }
+            code = typeNames.size();
+            typeCodes.put(type, code);
+            typeNames.add(type);
+        }
+        return (byte) code.intValue();
+    }
+
+    /**
+     * Returns the code of a known status type, or -1 for a type no task has ever had.
+     */
+    static synchronized int findTypeCode(Object type) {
+        Integer code = typeCodes.get(type);
+        return code == null ? -1 : code;
+    }
+
+    static synchronized String typeName(byte code) {
+        return typeNames.get(code & 0xff);
+    }
+}
@@ -0,0 +1,300 @@
+package ru.ifmo.neerc.utils;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+
+import ru.ifmo.neerc.chat.user.UserEntry;
+import ru.ifmo.neerc.clock.Clock;
+import ru.ifmo.neerc.task.Task;
+import ru.ifmo.neerc.task.TaskActions;
+import ru.ifmo.neerc.task.TaskStatus;
+
+/**
+ * The only place where tasks, users, clock and channels are mapped to XML and back.
+ *
+ * The codec does not build a document: it writes to a {@link Sink} and reads
+ * from a {@link Source}, which are thin adapters over whatever the caller
+ * already has, e.g. a dom4j element on the server, a Smack string builder or
+ * pull parser on the client, or a plain character stream.
+ */
+public final class XmlCodec {
+    public static final String TASK = "task";
+    public static final String STATUS = "status";
+    public static final String USER = "user";
+    public static final String CLOCK = "clock";
+    public static final String CHANNEL = "channel";
+    public static final String SUBSCRIBE = "subscribe";
+    public static final String UNSUBSCRIBE = "unsubscribe";
+    public static final String COUNT_PREFIX = "count-";
+
+    /**
+     * Receives XML events. Attributes with null values are skipped.
+     */
+    public interface Sink {
+        void startElement(String name);
+
+        void attribute(String name, String value);
+
+        void endElement(String name);
+    }
+
+    /**
+     * Cursor over one element of a document being read.
+     * Attributes of the element must be read before its children.
+     */
+    public interface Source {
+        String getName();
+
+        String getAttribute(String name);
+
+        /**
+         * Returns the next child element, or null when this element ends.
+         * The previous child must not be used after this call.
+         */
+        Source nextChild() throws IOException;
+    }
+
+    /**
+     * Hide utility class contructor.
+     */
+    private XmlCodec() {
+    }
+
+    public static void writeTask(Sink sink, Task task) {
+        sink.startElement(TASK);
+        writeTaskContent(sink, task);
+        sink.endElement(TASK);
+    }
+
+    /**
+     * Writes task attributes and statuses into an element which is already started.
+     * The number of statuses of each known type present is written as a {@code count-<type>}
+     * attribute, for readers which need no more than that; {@link #readTask} ignores them.
+     * Attribute names come from {@link TaskActions} only, never from the statuses.
+     */
+    public static void writeTaskContent(Sink sink, Task task) {
+        sink.attribute("id", task.getId());
+        sink.attribute("title", task.getTitle());
+        sink.attribute("type", task.getType());
+        sink.attribute("timestamp", Long.toString(task.getDate().getTime()));
+        for (String type : TaskActions.getStatusTypes()) {
+            int count = task.getStatusCount(type);
+            if (count > 0) {
+                sink.attribute(COUNT_PREFIX + type, Integer.toString(count));
+            }
+        }
+        for (Map.Entry<String, TaskStatus> entry : task.getStatuses().entrySet()) {
+            TaskStatus status = entry.getValue();
+            sink.startElement(STATUS);
+            sink.attribute("for", entry.getKey());
+            sink.attribute("type", status.getType());
+            sink.attribute("value", status.getValue());
+            sink.endElement(STATUS);
+        }
+    }
+
+    public static void writeUser(Sink sink, UserEntry user) {
+        sink.startElement(USER);
+        sink.attribute("name", user.getName());
+        sink.attribute("group", user.getGroup());
+        sink.attribute("power", user.isPower() ? "yes" : "no");
+        sink.endElement(USER);
+    }
+
+    public static void writeClock(Sink sink, Clock clock) {
+        sink.startElement(CLOCK);
+        sink.attribute("time", Long.toString(clock.getTime()));
+        sink.attribute("total", Long.toString(clock.getTotal()));
+        sink.attribute("status", Integer.toString(clock.getStatus()));
+        sink.endElement(CLOCK);
+    }
+
+    /**
+     * Writes a channel known in the room and whether the receiver is subscribed to it.
+     */
+    public static void writeChannel(Sink sink, String name, boolean subscribed) {
+        sink.startElement(CHANNEL);
+        sink.attribute("name", name);
+        sink.attribute("subscribed", subscribed ? "yes" : "no");
+        sink.endElement(CHANNEL);
+    }
+
+    /**
+     * Writes a request to subscribe to the channel or to unsubscribe from it.
+     */
+    public static void writeSubscription(Sink sink, String name, boolean subscribe) {
+        String element = subscribe ? SUBSCRIBE : UNSUBSCRIBE;
+        sink.startElement(element);
+        sink.attribute("name", name);
+        sink.endElement(element);
+    }
+
+    /**
+     * Reads a task from the source positioned at the task element
+     * and consumes the element.
+     */
+    public static Task readTask(Source source) throws IOException {
+        String timestamp = source.getAttribute("timestamp");
+        Date date = timestamp == null ? new Date() : new Date(Long.parseLong(timestamp));
+        Task task = new Task(
+                source.getAttribute("id"),
+                source.getAttribute("type"),
+                source.getAttribute("title"),
+                date
+        );
+        for (Source child = source.nextChild(); child != null; child = source.nextChild()) {
+            if (STATUS.equals(child.getName())) {
+                task.setStatus(
+                        child.getAttribute("for"),
+                        child.getAttribute("type"),
+                        child.getAttribute("value")
+                );
+            }
+        }
+        return task;
+    }
+
+    public static UserEntry readUser(Source source) {
+        String name = source.getAttribute("name");
+        UserEntry user = new UserEntry(name, 0, name, "yes".equals(source.getAttribute("power")));
+        user.setGroup(source.getAttribute("group"));
+        return user;
+    }
+
+    public static Clock readClock(Source source) {
+        Clock clock = new Clock();
+        clock.setTime(Long.parseLong(source.getAttribute("time")));
+        clock.setTotal(Long.parseLong(source.getAttribute("total")));
+        clock.setStatus(Integer.parseInt(source.getAttribute("status")));
+        return clock;
+    }
+
+    public static String readChannelName(Source source) {
+        return source.getAttribute("name");
+    }
+
+    public static boolean readChannelSubscribed(Source source) {
+        return "yes".equals(source.getAttribute("subscribed"));
+    }
+
+    /**
+     * Appends the value escaped for a quoted attribute, so that any parser reads it back
+     * exactly, tabs and line breaks included.
+     */
+    public static void escapeAttribute(Appendable out, String value) throws IOException {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String entity;
+            switch (value.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                case '\'':
+                    entity = "&apos;";
+                    break;
+                // parsers turn these into spaces in attribute values unless they are references
+                case '\t':
+                    entity = "&#9;";
+                    break;
+                case '\n':
+                    entity = "&#10;";
+                    break;
+                case '\r':
+                    entity = "&#13;";
+                    break;
+                default:
+                    continue;
+            }
+            out.append(value, start, i).append(entity);
+            start = i + 1;
+        }
+        out.append(value, start, value.length());
+    }
+
+    /**
+     * Writes XML text to a character stream, or to a byte stream through a writer.
+     * Like {@link java.io.PrintWriter}, it does not throw on write errors;
+     * the first one is rethrown by {@link #flush()}.
+     */
+    public static class TextSink implements Sink {
+        private final Appendable out;
+        private boolean startTagOpen;
+        private IOException error;
+
+        public TextSink(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void startElement(String name) {
+            try {
+                closeStartTag();
+                out.append('<').append(name);
+                startTagOpen = true;
+            } catch (IOException e) {
+                setError(e);
+            }
+        }
+
+        @Override
+        public void attribute(String name, String value) {
+            if (value == null) {
+                return;
+            }
+            try {
+                out.append(' ').append(name).append("=\"");
+                escapeAttribute(out, value);
+                out.append('"');
+            } catch (IOException e) {
+                setError(e);
+            }
+        }
+
+        @Override
+        public void endElement(String name) {
+            try {
+                if (startTagOpen) {
+                    out.append("/>");
+                    startTagOpen = false;
+                } else {
+                    out.append("</").append(name).append('>');
+                }
+            } catch (IOException e) {
+                setError(e);
+            }
+        }
+
+        public void flush() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+            if (out instanceof Flushable) {
+                ((Flushable) out).flush();
+            }
+        }
+
+        private void closeStartTag() throws IOException {
+            if (startTagOpen) {
+                out.append('>');
+                startTagOpen = false;
+            }
+        }
+
+        private void setError(IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+    }
+}
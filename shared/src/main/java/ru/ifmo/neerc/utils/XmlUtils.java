@@ -4,11 +4,9 @@ import org.dom4j.Element;
 import ru.ifmo.neerc.chat.user.UserEntry;
 import ru.ifmo.neerc.clock.Clock;
 import ru.ifmo.neerc.task.Task;
-import ru.ifmo.neerc.task.TaskStatus;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Map;
+import java.io.IOException;
+import java.util.Iterator;
 
 /**
  * @author Evgeny Mandrikov
@@ -18,6 +16,8 @@ public final class XmlUtils {
     public static final String NAMESPACE_TASKS = NAMESPACE + "#tasks";
     public static final String NAMESPACE_USERS = NAMESPACE + "#users";
     public static final String NAMESPACE_CLOCK = NAMESPACE + "#clock";
+    public static final String NAMESPACE_SNAPSHOT = NAMESPACE + "#snapshot";
+    public static final String NAMESPACE_CHANNELS = NAMESPACE + "#channels";
 
     /**
      * Hide utility class contructor.
@@ -26,52 +26,85 @@ public final class XmlUtils {
     }
 
     public static void taskToXml(Element parent, Task task) {
-        Element taskElement = parent.addElement("task");
-        taskElement.addAttribute("id", task.getId());
-        taskElement.addAttribute("title", task.getTitle());
-        taskElement.addAttribute("type", task.getType());
-        taskElement.addAttribute("timestamp", Long.toString(task.getDate().getTime()));
-        for (Map.Entry<String, TaskStatus> entry : task.getStatuses().entrySet()) {
-            TaskStatus status = entry.getValue();
-            Element statusElement = taskElement.addElement("status");
-            statusElement.addAttribute("for", entry.getKey());
-            statusElement.addAttribute("type", status.getType());
-            statusElement.addAttribute("value", status.getValue());
-        }
+        XmlCodec.writeTask(new ElementSink(parent), task);
     }
 
     public static void clockToXml(Element parent, Clock clock) {
-        Element taskElement = parent.addElement("clock");
-        taskElement.addAttribute("time", "" + clock.getTime());
-        taskElement.addAttribute("total", "" + clock.getTotal());
-        taskElement.addAttribute("status", "" + clock.getStatus());
+        XmlCodec.writeClock(new ElementSink(parent), clock);
+    }
+
+    public static void channelToXml(Element parent, String name, boolean subscribed) {
+        XmlCodec.writeChannel(new ElementSink(parent), name, subscribed);
     }
 
     public static void userToXml(Element parent, UserEntry user) {
-        Element userElement = parent.addElement("user");
-        userElement.addAttribute("name", user.getName());
-        userElement.addAttribute("group", user.getGroup());
-        userElement.addAttribute("power", user.isPower() ? "yes" : "no");
+        XmlCodec.writeUser(new ElementSink(parent), user);
     }
 
     public static Task taskFromXml(Element taskElement) {
-        String id = taskElement.attributeValue("id");
-        String type = taskElement.attributeValue("type");
-        
-        String title = taskElement.attributeValue("title");
-        String timestamp = taskElement.attributeValue("timestamp");
-        Date date = timestamp == null ? new Date() : new Date(Long.parseLong(timestamp));
-        Task task = new Task(id, type, title, date);
-
-        for (Object childElement : taskElement.elements()) {
-            Element child = (Element) childElement;
-            if ("status".equals(child.getName())) {
-                String from = child.attributeValue("for");
-                type = child.attributeValue("type");
-                String value = child.attributeValue("value");
-                task.setStatus(from, type, value);
+        try {
+            return XmlCodec.readTask(new ElementSource(taskElement));
+        } catch (IOException e) {
+            // the element is already in memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds elements written by {@link XmlCodec} to a dom4j element.
+     */
+    public static class ElementSink implements XmlCodec.Sink {
+        private Element element;
+
+        public ElementSink(Element parent) {
+            this.element = parent;
+        }
+
+        @Override
+        public void startElement(String name) {
+            element = element.addElement(name);
+        }
+
+        @Override
+        public void attribute(String name, String value) {
+            if (value != null) {
+                element.addAttribute(name, value);
+            }
+        }
+
+        @Override
+        public void endElement(String name) {
+            element = element.getParent();
+        }
+    }
+
+    /**
+     * Reads a dom4j element with {@link XmlCodec}.
+     */
+    public static class ElementSource implements XmlCodec.Source {
+        private final Element element;
+        private Iterator<?> children;
+
+        public ElementSource(Element element) {
+            this.element = element;
+        }
+
+        @Override
+        public String getName() {
+            return element.getName();
+        }
+
+        @Override
+        public String getAttribute(String name) {
+            return element.attributeValue(name);
+        }
+
+        @Override
+        public XmlCodec.Source nextChild() {
+            if (children == null) {
+                children = element.elementIterator();
             }
+            return children.hasNext() ? new ElementSource((Element) children.next()) : null;
         }
-        return task;
     }
 }
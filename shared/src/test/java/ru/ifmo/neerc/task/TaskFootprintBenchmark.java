@@ -0,0 +1,68 @@
+package ru.ifmo.neerc.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the heap taken by task statuses, stored in tasks as they are now
+ * and in per-task hash maps of status objects as they used to be.
+ * Names and types are fresh strings in both cases, as if parsed from XML.
+ *
+ * Usage: gradle :shared:footprintBenchmark [-Pbenchmark.args="tasks users"]
+ */
+public class TaskFootprintBenchmark {
+    private static final String[] TYPES = {
+        TaskActions.STATUS_NEW, TaskActions.STATUS_RUNNING, TaskActions.STATUS_SUCCESS, TaskActions.STATUS_FAIL
+    };
+
+    public static void main(String[] args) {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int userCount = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        long base = usedHeap();
+        List<Task> tasks = new ArrayList<>();
+        Random random = new Random(2016);
+        for (int i = 0; i < taskCount; i++) {
+            Task task = new Task("id" + i, "todo", "task " + i);
+            for (int j = 0; j < userCount; j++) {
+                task.setStatus(new String("hall" + j), new String(TYPES[random.nextInt(TYPES.length)]), value(random));
+            }
+            tasks.add(task);
+        }
+        long columnar = usedHeap() - base;
+
+        base = usedHeap();
+        List<Map<String, TaskStatus>> maps = new ArrayList<>();
+        random = new Random(2016);
+        for (int i = 0; i < taskCount; i++) {
+            Map<String, TaskStatus> statuses = new HashMap<>();
+            for (int j = 0; j < userCount; j++) {
+                statuses.put(new String("hall" + j),
+                        new TaskStatus(new String(TYPES[random.nextInt(TYPES.length)]), value(random)));
+            }
+            maps.add(statuses);
+        }
+        long hashed = usedHeap() - base;
+
+        System.out.printf("%d tasks x %d users: hash maps %d KB, columns %d KB (%.1fx smaller)%n",
+                taskCount, userCount, hashed / 1024, columnar / 1024, (double) hashed / columnar);
+        if (tasks.size() + maps.size() == 0) {
+            System.out.println();
+        }
+    }
+
+    private static String value(Random random) {
+        return random.nextInt(10) == 0 ? new String("reason") : new String("");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}